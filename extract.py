@@ -1,4 +1,5 @@
 import csv
+import itertools
 import os
 import subprocess
 import uuid
@@ -19,37 +20,41 @@ def run_git_command(project_path, git_command):
     return result.stdout
 
 
-def find_package_path_instance(input_project_dir, class_file):
+def build_class_index(input_project_dir):
     """
-    Search for the class file within the project directory.
+    Index the Java files of the checked out commit by file name, once per commit.
+    Maps e.g. Widget.java to the paths of every Widget.java in the working tree.
+    """
+    index = {}
+    git_dir = os.path.join(input_project_dir, '.git')
+    for root, dirs, files in os.walk(input_project_dir):
+        if root == input_project_dir:
+            # Never descend into the git metadata
+            dirs[:] = [d for d in dirs if os.path.join(root, d) != git_dir]
+        for file in files:
+            if file.endswith('.java'):
+                index.setdefault(file, []).append(os.path.join(root, file))
+
+    return index
+
+
+def find_package_path_instance(class_index, class_file):
+    """
+    Look up the class file in the index of the checked out commit.
     Return the file path if exactly one instance is found.
     If ambiguous (i.e., found in multiple locations), return None.
-    Use early stopping to avoid unnecessary searching once the file is found.
     """
-    java_file_path = None
-
-    # Walk through the project directory looking for the class file
-    for root, dirs, files in os.walk(input_project_dir):
-        if root.startswith(os.path.join(input_project_dir, '.git')):
-            continue
-        # Check if the class file exists in the current directory
-        current_file_path = os.path.join(root, class_file)
-        if os.path.exists(current_file_path):
-            # If we already found a file earlier, we have ambiguity
-            if java_file_path:
-                print(f"Ambiguity: found {class_file} in multiple locations, skipping.")
-                return None
-            # Otherwise, mark the first found instance
-            java_file_path = current_file_path
+    suffix = os.path.sep + class_file
+    matches = [path for path in class_index.get(os.path.basename(class_file), []) if path.endswith(suffix)]
 
-        # Stop walking into subdirectories if we've found the file
-        if java_file_path:
-            dirs[:] = []  # Clear dirs to stop further traversal in this path
+    if len(matches) > 1:
+        print(f"Ambiguity: found {class_file} in multiple locations, skipping.")
+        return None
 
-    return java_file_path
+    return matches[0] if matches else None
 
 
-def extract_class(row, input_project_dir, output_project_dir):
+def extract_class(row, class_index, extracted_classes, output_project_dir):
     project = row[0]
     hash_val = row[1]
     long_name = row[2]
@@ -61,8 +66,12 @@ def extract_class(row, input_project_dir, output_project_dir):
     if class_file.__contains__('$'):
         class_file = class_file.split('$', 1)[0]
 
+    # Every row of the same outer class at this commit shares one copy of the source
+    if class_file in extracted_classes:
+        return [project, extracted_classes[class_file], hash_val, long_name, parent, num_bugs]
+
     # Search for all instances of the package path within the project directory
-    java_file_path = find_package_path_instance(input_project_dir, f"{class_file}.java")
+    java_file_path = find_package_path_instance(class_index, f"{class_file}.java")
 
     if not java_file_path:
         print(f"Java file {class_file} not found or ambiguous in {project}, skipping.")
@@ -86,6 +95,7 @@ def extract_class(row, input_project_dir, output_project_dir):
 
     # Return the extracted method details for the output CSV
     relative_path = os.path.relpath(output_java_file, OUTPUT_DIR)
+    extracted_classes[class_file] = relative_path
     print(f"Finished Extracting {parent} from {java_file_path}")
     return [project, relative_path, hash_val, long_name, parent, num_bugs]
 
@@ -124,6 +134,9 @@ def process_csv():
     # Flatten the list of lists after all processes are done
     extracted_methods = [item for sublist in all_results for item in sublist]
 
+    # Sort by the file group key the method extractor uses, so it can stream the groups without sorting them itself
+    extracted_methods.sort(key=lambda method: f"{method[0]}#{method[2]}://{method[4].split('$', 1)[0]}")
+
     # Write the method-p-source.csv file
     with open(METHOD_OUTPUT_CSV, 'w', newline='') as csvfile:
         writer = csv.writer(csvfile)
@@ -145,10 +158,9 @@ def process_project(project, rows):
 
     extracted_methods = []
 
-    # Process each row sequentially within the project
-    for row in rows:
-        hash_val = row[1]
-
+    # Process the rows commit by commit, so every commit is checked out and indexed once
+    rows = sorted(rows, key=lambda row: row[1])
+    for hash_val, commit_rows in itertools.groupby(rows, key=lambda row: row[1]):
         # Checkout the specific commit
         try:
             run_git_command(input_project_dir, ['git', 'switch', '--discard-changes','--detach', hash_val])
@@ -156,10 +168,14 @@ def process_project(project, rows):
             print(f"Failed to checkout {hash_val} in {project}: {e}")
             continue
 
+        class_index = build_class_index(input_project_dir)
+        extracted_classes = {}
+
         # Extract the method from the source file
-        result = extract_class(row, input_project_dir, output_project_dir)
-        if result:
-            extracted_methods.append(result)
+        for row in commit_rows:
+            result = extract_class(row, class_index, extracted_classes, output_project_dir)
+            if result:
+                extracted_methods.append(result)
 
     return extracted_methods
 
@@ -0,0 +1,191 @@
+package me.jacob.benchmark;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.*;
+import com.github.javaparser.ast.type.Type;
+import me.jacob.ParserPool;
+import me.jacob.entities.SdpMethod;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sources the benchmarks run on: the checked-in prediction sample and generated classes
+ * that are large enough to expose anything that grows with the number of methods.
+ */
+public class Fixtures {
+
+    public static final String BUBBLE_SORT = "BubbleSort";
+
+    public static String source(String fixture) throws IOException {
+        if (BUBBLE_SORT.equals(fixture)) {
+            try (InputStream stream = Fixtures.class.getResourceAsStream("/fixtures/BubbleSort.java")) {
+                return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+
+        if (fixture.startsWith("Synthetic")) {
+            return synthetic(Integer.parseInt(fixture.substring("Synthetic".length())));
+        }
+
+        throw new IllegalArgumentException("Unknown fixture " + fixture);
+    }
+
+    public static CompilationUnit parse(String fixture) throws IOException {
+        // Parsed from disk like the real pipeline, so the symbol solver sees the same setup
+        var file = File.createTempFile(fixture, ".java");
+        file.deleteOnExit();
+        Files.writeString(file.toPath(), source(fixture));
+        return ParserPool.parse(file).getResult().orElseThrow();
+    }
+
+    /**
+     * A class with {@code methods} methods that call their neighbours and a few far away ones,
+     * with overloads, anonymous classes and a nested type like the larger BugHunter classes.
+     */
+    public static String synthetic(int methods) {
+        var source = new StringBuilder();
+        source.append("package bench.generated;\n\n");
+        source.append("import java.util.*;\n\n");
+        source.append("public class Synthetic").append(methods).append(" {\n");
+        source.append("    private final List<String> values = new ArrayList<>();\n\n");
+        source.append("    public Synthetic").append(methods).append("() {\n        this(0);\n    }\n\n");
+        source.append("    public Synthetic").append(methods).append("(int seed) {\n        m0(seed, \"seed\");\n    }\n\n");
+
+        for (int i = 0; i < methods; i++) {
+            int next = (i + 1) % methods;
+            int far = (i * 7 + 3) % methods;
+            source.append("    public int m").append(i).append("(int value, String name) {\n");
+            source.append("        values.add(name);\n");
+            source.append("        if (value > ").append(i).append(") {\n");
+            source.append("            return m").append(next).append("(value - 1, name) + m").append(far).append("(name);\n");
+            source.append("        }\n");
+            if (i % 10 == 0) {
+                source.append("        Runnable task = new Runnable() {\n");
+                source.append("            @Override\n");
+                source.append("            public void run() {\n");
+                source.append("                add(name, value);\n");
+                source.append("            }\n");
+                source.append("        };\n");
+                source.append("        task.run();\n");
+            }
+            source.append("        return add(name);\n");
+            source.append("    }\n\n");
+
+            source.append("    public int m").append(i).append("(String name) {\n");
+            source.append("        return m").append(i).append("(name.length(), name);\n");
+            source.append("    }\n\n");
+        }
+
+        source.append("    public int add(String value) {\n        values.add(value);\n        return values.size();\n    }\n\n");
+        source.append("    public int add(String value, int times) {\n        for (int i = 0; i < times; i++) {\n            add(value);\n        }\n        return times;\n    }\n\n");
+        source.append("    public int add(String[] values) {\n        return add(values[0]);\n    }\n\n");
+
+        source.append("    public static class Helper {\n");
+        source.append("        public int help(Map<String, Integer> counts, int[][] grid) {\n");
+        source.append("            return new Synthetic").append(methods).append("().m0(grid.length, counts.toString());\n");
+        source.append("        }\n");
+        source.append("    }\n");
+        source.append("}\n");
+        return source.toString();
+    }
+
+    /**
+     * JVM long names for every method and constructor of named types in the unit, built the way
+     * the BugHunter tables spell them (simple names are enough for the matcher).
+     */
+    public static List<String> longNames(CompilationUnit cu) {
+        var packageName = cu.getPackageDeclaration().map(p -> p.getNameAsString()).orElse("");
+        var result = new ArrayList<String>();
+        for (var type : cu.findAll(TypeDeclaration.class)) {
+            var isLocal = type.findAncestor(CallableDeclaration.class).isPresent();
+            if (isLocal || !(type instanceof ClassOrInterfaceDeclaration || type instanceof EnumDeclaration)) {
+                continue;
+            }
+
+            var owner = ownerName(type);
+            for (var member : type.getMembers()) {
+                if (member instanceof MethodDeclaration method) {
+                    result.add(packageName + "." + owner + "." + method.getNameAsString() + descriptor(method));
+                } else if (member instanceof ConstructorDeclaration constructor) {
+                    result.add(packageName + "." + owner + ".<init>" + descriptor(constructor));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /** Input nodes for the context fetcher, taken from the first {@code limit} callables of the unit. */
+    public static List<SdpMethod> inputMethods(CompilationUnit cu, int limit) {
+        var methods = new ArrayList<SdpMethod>();
+        for (var declaration : cu.findAll(CallableDeclaration.class)) {
+            if (methods.size() == limit) {
+                break;
+            }
+
+            var method = new SdpMethod();
+            method.setId(methods.size());
+            method.setProject("bench");
+            method.setHash("0");
+            method.setParent("bench");
+            method.setSource(declaration);
+            method.setSignature(declaration.getSignature().asString());
+            methods.add(method);
+        }
+
+        return methods;
+    }
+
+    private static String ownerName(TypeDeclaration<?> type) {
+        var name = type.getNameAsString();
+        var parent = type.getParentNode();
+        while (parent.isPresent()) {
+            if (parent.get() instanceof TypeDeclaration<?> outer) {
+                name = outer.getNameAsString() + "$" + name;
+            }
+            parent = parent.get().getParentNode();
+        }
+
+        return name;
+    }
+
+    private static String descriptor(CallableDeclaration<?> callable) {
+        var descriptor = new StringBuilder("(");
+        for (var parameter : callable.getParameters()) {
+            if (parameter.isVarArgs()) {
+                descriptor.append('[');
+            }
+            descriptor.append(descriptor(parameter.getType()));
+        }
+
+        return descriptor.append(")V").toString();
+    }
+
+    private static String descriptor(Type type) {
+        if (type.isArrayType()) {
+            return "[" + descriptor(type.asArrayType().getComponentType());
+        }
+
+        if (type.isPrimitiveType()) {
+            return switch (type.asPrimitiveType().getType()) {
+                case BOOLEAN -> "Z";
+                case CHAR -> "C";
+                case BYTE -> "B";
+                case SHORT -> "S";
+                case INT -> "I";
+                case LONG -> "J";
+                case FLOAT -> "F";
+                case DOUBLE -> "D";
+            };
+        }
+
+        var name = type.isClassOrInterfaceType() ? type.asClassOrInterfaceType().getNameWithScope() : type.asString();
+        return "L" + name.replace('.', '$') + ";";
+    }
+}
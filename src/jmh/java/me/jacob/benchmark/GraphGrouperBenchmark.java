@@ -0,0 +1,49 @@
+package me.jacob.benchmark;
+
+import me.jacob.GraphGrouper;
+import me.jacob.entities.SdpEdge;
+import me.jacob.entities.SdpMethod;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** Groups a random sparse call graph, sized from one class up to whole-project mode. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphGrouperBenchmark {
+
+    @Param({"100", "10000", "200000"})
+    public int nodes;
+
+    private List<SdpEdge> edges;
+
+    @Setup
+    public void setup() {
+        var random = new Random(42);
+        var methods = new ArrayList<SdpMethod>(nodes);
+        for (int i = 0; i < nodes; i++) {
+            // Ids are spread out like the global id counter hands them to concurrent workers
+            methods.add(new SdpMethod().setId(i * 3 + 1_000_000));
+        }
+
+        edges = new ArrayList<>(nodes * 2);
+        for (int i = 0; i < nodes * 2; i++) {
+            int source = random.nextInt(nodes);
+            // Mostly local calls so that there are many small components, like real classes
+            int destination = Math.floorMod(source + random.nextInt(8) - 4, nodes);
+            edges.add(new SdpEdge(methods.get(source), methods.get(destination)));
+        }
+    }
+
+    @Benchmark
+    public Object groupEdgesIntoGraphs() {
+        return GraphGrouper.groupEdgesIntoGraphs(edges);
+    }
+}
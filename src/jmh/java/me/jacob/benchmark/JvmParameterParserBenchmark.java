@@ -0,0 +1,40 @@
+package me.jacob.benchmark;
+
+import me.jacob.JvmParameterParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JvmParameterParserBenchmark {
+
+    private static final String[] DESCRIPTORS = {
+            "",
+            "I",
+            "Ljava/lang/String;I",
+            "[[I[Ljava/lang/String;",
+            "Ljava/util/Map$Entry;JZ",
+            "Lio/micronaut/http/HttpRequest;Ljava/lang/String;Ljava/util/Optional;Ljava/lang/Integer;[B",
+    };
+
+    @Benchmark
+    public void parseParameters(Blackhole blackhole) {
+        for (var descriptor : DESCRIPTORS) {
+            blackhole.consume(new JvmParameterParser().parseParameters(descriptor));
+        }
+    }
+
+    // What NameMatcher pays per long name once the descriptor has been seen before
+    @Benchmark
+    public void parseCached(Blackhole blackhole) {
+        for (var descriptor : DESCRIPTORS) {
+            blackhole.consume(JvmParameterParser.parseCached(descriptor));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package me.jacob.benchmark;
+
+import com.github.javaparser.ast.CompilationUnit;
+import me.jacob.CompilationUnitIndex;
+import me.jacob.MethodContextFetcher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Expands the call graph from a handful of input methods, symbol solving included. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MethodContextFetcherBenchmark {
+
+    @Param({"BubbleSort", "Synthetic200", "Synthetic1000"})
+    public String fixture;
+
+    @Param({"10"})
+    public int inputs;
+
+    private CompilationUnit cu;
+
+    private CompilationUnitIndex index;
+
+    @Setup
+    public void setup() throws Exception {
+        cu = Fixtures.parse(fixture);
+        index = new CompilationUnitIndex(cu);
+    }
+
+    @Benchmark
+    public MethodContextFetcher calculate() {
+        var fetcher = new MethodContextFetcher(Fixtures.inputMethods(cu, inputs), index);
+        fetcher.calculate();
+        return fetcher;
+    }
+}
@@ -0,0 +1,38 @@
+package me.jacob.benchmark;
+
+import com.github.javaparser.ast.CompilationUnit;
+import me.jacob.CompilationUnitIndex;
+import me.jacob.MethodListTransformer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Context expansion, test filtering and graph assignment for a whole class. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MethodListTransformerBenchmark {
+
+    @Param({"BubbleSort", "Synthetic200", "Synthetic1000"})
+    public String fixture;
+
+    private CompilationUnit cu;
+
+    private CompilationUnitIndex index;
+
+    @Setup
+    public void setup() throws Exception {
+        cu = Fixtures.parse(fixture);
+        index = new CompilationUnitIndex(cu);
+    }
+
+    @Benchmark
+    public MethodListTransformer transform() {
+        var transformer = new MethodListTransformer(Fixtures.inputMethods(cu, Integer.MAX_VALUE), index);
+        transformer.transform();
+        return transformer;
+    }
+}
@@ -0,0 +1,44 @@
+package me.jacob.benchmark;
+
+import com.github.javaparser.ast.CompilationUnit;
+import me.jacob.CompilationUnitIndex;
+import me.jacob.NameMatcher;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Matches every long name of a fixture against its compilation unit, as one file group would. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NameMatcherBenchmark {
+
+    @Param({"BubbleSort", "Synthetic200", "Synthetic1000"})
+    public String fixture;
+
+    private CompilationUnit cu;
+
+    private List<String> longNames;
+
+    @Setup
+    public void setup() throws Exception {
+        cu = Fixtures.parse(fixture);
+        longNames = Fixtures.longNames(cu);
+    }
+
+    // Includes building the index, which happens once per file group
+    @Benchmark
+    public void calculateMatchingNode(Blackhole blackhole) throws Exception {
+        var index = new CompilationUnitIndex(cu);
+        for (var longName : longNames) {
+            var nameMatcher = new NameMatcher(index, longName);
+            nameMatcher.calculateMatchingNode();
+            blackhole.consume(nameMatcher.getResult());
+        }
+    }
+}
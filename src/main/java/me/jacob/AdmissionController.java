@@ -0,0 +1,62 @@
+package me.jacob;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits how many file groups are in flight by the heap their compilation units are estimated to hold,
+ * rather than by their number. A group is weighted by the size of its class source and only starts once
+ * its weight fits into the budget next to the groups already running, so a few huge classes run with
+ * fewer others beside them while small classes still run on every worker.
+ * <p>
+ * A group larger than the whole budget is admitted on its own, it runs alone instead of never.
+ */
+public class AdmissionController {
+
+    // Retained heap per byte of source for a parsed unit with its resolved calls, measured at 90-150
+    static final int HEAP_PER_SOURCE_BYTE = 100;
+
+    // Records, nodes and output of a group next to the unit itself
+    static final long GROUP_OVERHEAD = 64 * 1024;
+
+    // Permits are counted in KB so that budgets beyond 2GB fit into an int
+    private static final int UNIT = 1024;
+
+    private final int capacity;
+
+    private final Semaphore permits;
+
+    public AdmissionController(long budgetBytes) {
+        this.capacity = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budgetBytes / UNIT));
+        // Fair, so that a large group waiting for room is not overtaken by the small ones behind it
+        this.permits = new Semaphore(capacity, true);
+    }
+
+    /** Half of the maximum heap, the rest is left for the output queue, caches and the type solver. */
+    public static long defaultBudget() {
+        return Runtime.getRuntime().maxMemory() / 2;
+    }
+
+    public int weight(long sourceSize) {
+        var estimate = GROUP_OVERHEAD + sourceSize * HEAP_PER_SOURCE_BYTE;
+        return (int) Math.min(capacity, Math.max(1, estimate / UNIT));
+    }
+
+    /**
+     * Waits until a group with a class source of {@code sourceSize} bytes fits into the budget.
+     *
+     * @return the weight to {@link #release} once the group is done
+     */
+    public int acquire(long sourceSize) throws InterruptedException {
+        var weight = weight(sourceSize);
+        permits.acquire(weight);
+        return weight;
+    }
+
+    public void release(int weight) {
+        permits.release(weight);
+    }
+
+    public long getBudget() {
+        return (long) capacity * UNIT;
+    }
+}
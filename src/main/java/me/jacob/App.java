@@ -1,13 +1,14 @@
 package me.jacob;
 
-import com.opencsv.bean.CsvToBeanBuilder;
+import com.opencsv.CSVReader;
 import com.opencsv.bean.StatefulBeanToCsvBuilder;
 import com.opencsv.exceptions.CsvDataTypeMismatchException;
 import com.opencsv.exceptions.CsvRequiredFieldEmptyException;
 import me.jacob.entities.BugRecordInput;
 import me.jacob.entities.BugRecordOutput;
-import me.jacob.entities.EdgeOutput;
+import me.jacob.entities.FileGroup;
 import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
@@ -16,56 +17,197 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
 
 public class App {
+
+    // Groups read ahead of the workers from a streamed input, the largest of them is started next
+    private static final int SCHEDULING_WINDOW = 4096;
+
     public static void main(String[] args) {
         App app = new App();
-        app.run(args);
+        if (args.length > 0 && args[0].equals("merge")) {
+            app.merge(Arrays.copyOfRange(args, 1, args.length));
+        } else {
+            app.run(args);
+        }
+    }
+
+    public void merge(String[] args) {
+        ArgumentParser parser = ArgumentParsers.newFor("Method Extractor merge").build()
+                .defaultHelp(true)
+                .description("Merges the output directories of a sharded training run");
+
+        parser.addArgument("-o", "--output")
+                .setDefault("output")
+                .help("The directory for the merged nodes.csv and edges.csv");
+
+        parser.addArgument("shards")
+                .nargs("+")
+                .help("The output directories of the shards");
+
+        Namespace ns = null;
+        try {
+            ns = parser.parseArgs(args);
+        } catch (ArgumentParserException e) {
+            parser.handleError(e);
+            System.exit(1);
+        }
+
+        var shards = ns.<String>getList("shards").stream().map(File::new).toList();
+        new ShardMerger(shards, new File(ns.getString("output"))).merge();
     }
 
     public void run(String[] args) {
         var configuration = getConfiguration(args);
-        if(configuration.getFileName().endsWith(".java")) {
-            preparePredictionData(configuration);
-        } else {
-            prepareTrainingData(configuration);
+        var started = System.nanoTime();
+        if (configuration.isVerbose()) {
+            DebugLog.start();
+        }
+        var prediction = configuration.getFileName().endsWith(".java");
+        try {
+            if(prediction) {
+                preparePredictionData(configuration);
+            } else {
+                prepareTrainingData(configuration);
+            }
+        } finally {
+            // A failed run still reports how far it got
+            try {
+                Metrics.write(new File(configuration.getOutputDirectory()), prediction ? "prediction" : "training", System.nanoTime() - started);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            DebugLog.stop();
         }
     }
 
     private void prepareTrainingData(Configuration configuration) {
-        var records = getRecords(configuration);
-        List<BugRecordOutput> nodes = Collections.synchronizedList(new ArrayList<>());
-        List<EdgeOutput> edges = Collections.synchronizedList(new ArrayList<>());
+        var outputDirectory = new File(configuration.getOutputDirectory());
+        var classSourceStore = new ClassSourceStore(outputDirectory);
+        if (configuration.getShardCount() > 1) {
+            IdGenerator.shard(configuration.getShardIndex(), configuration.getShardCount());
+        }
+        var journal = new CheckpointJournal(outputDirectory, configuration.isResume());
+        if (journal.getCompletedCount() > 0) {
+            IdGenerator.advancePast(journal.getMaxNodeId(), journal.getMaxGraphId());
+        }
+        Predicate<String> selected = key -> isInShard(configuration, key) && !journal.isCompleted(key);
+
+        GitClassSourceProvider gitSources = null;
+        FileGroupReader groupReader = null;
+        ClassSourceProvider classSourceProvider;
+        Iterator<FileGroup> groups;
+        int groupCount;
+        long totalCost;
+        if (configuration.getGitDirectory() != null) {
+            // Straight from the BugHunter table, the class files are looked up in the repositories
+            gitSources = new GitClassSourceProvider(new File(configuration.getGitDirectory()), classSourceStore);
+            var rows = getBugHunterRecords(configuration).stream().filter(record -> selected.test(FileGroup.keyOf(record))).toList();
+            List<BugRecordInput> records;
+            try (var ignored = Metrics.time(Metrics.Stage.SOURCE_COPY)) {
+                records = gitSources.resolve(rows);
+            }
+            classSourceProvider = gitSources;
+            var groupList = scheduleLargestFirst(classSourceProvider, groupSameFile(records));
+            groups = groupList.iterator();
+            groupCount = groupList.size();
+            totalCost = groupList.stream().mapToLong(FileGroup::getCost).sum();
+        } else {
+            classSourceProvider = new FileClassSourceProvider(configuration.getInputDirectory(), classSourceStore);
+            groupReader = FileGroupReader.open(new File(configuration.getFileName()), new File(outputDirectory, "sort"), selected, classSourceProvider);
+            groups = largestFirst(groupReader, SCHEDULING_WINDOW);
+            groupCount = groupReader.getSelectedGroupCount();
+            totalCost = groupReader.getSelectedCost();
+        }
+
+        if (configuration.getShardCount() > 1) {
+            System.out.println("Shard " + configuration.getShardIndex() + "/" + configuration.getShardCount() + ": " + groupCount + " file groups");
+        }
+        if (journal.getCompletedCount() > 0) {
+            System.out.println("Resuming after " + journal.getCompletedCount() + " completed file groups, " + groupCount + " left");
+        }
 
-        Map<String, List<BugRecordInput>> fileMap = groupSameFile(records);
-        var executor = Executors.newFixedThreadPool(10); // Control how many concurrent tasks you want
+        var executor = Executors.newFixedThreadPool(configuration.getThreads());
+        var ioExecutor = createIoExecutor(configuration);
+        // Limits how many groups may sit copied but unparsed when copying runs ahead on its own threads
+        var prefetch = new Semaphore(configuration.getThreads() * 2);
+        var admission = new AdmissionController(configuration.getMemoryBudget() > 0
+                ? configuration.getMemoryBudget() * 1024 * 1024
+                : AdmissionController.defaultBudget());
         var futures = new ArrayList<CompletableFuture<Void>>();
+        var methodSourceSink = createMethodSourceSink(configuration);
+        var resultCache = configuration.getCacheDirectory() == null
+                ? null
+                : new ResultCache(new File(configuration.getCacheDirectory()), configuration.getCacheSize() * 1024 * 1024);
+        var output = new OutputWriter<>(new File(configuration.getOutputDirectory()), BugRecordOutput.class, journal);
+        var progress = new ProgressReporter(groupCount, totalCost, configuration.getProgressInterval());
 
         try {
-            for (var recordCollection : fileMap.values()) {
-                futures.add(
-                        CompletableFuture.runAsync(() -> {
-                            try {
-                                var transformer = new BugRecordTransformer(recordCollection, configuration);
-                                transformer.run();
-                                nodes.addAll(transformer.getNodes());
-                                edges.addAll(transformer.getEdges());
-                            } catch (Exception | Error ex) {
-                                ex.printStackTrace();
-                            }
-                        }, executor)
-                );
+            while (groups.hasNext()) {
+                var group = groups.next();
+                var transformer = new BugRecordTransformer(group.getRecords(), configuration, classSourceProvider, methodSourceSink, resultCache);
+                // Blocks until the group's estimated heap fits next to the groups in flight
+                var weight = admission.acquire(group.getSourceSize());
+                if (ioExecutor == null) {
+                    futures.add(
+                            CompletableFuture.runAsync(() -> {
+                                try {
+                                    transformer.run();
+                                    output.submit(group.getKey(), transformer.getNodes(), transformer.getEdges());
+                                    progress.completed(group.getCost(), transformer.getNodes().size(), transformer.getEdges().size());
+                                } catch (Exception | Error ex) {
+                                    ex.printStackTrace();
+                                    progress.failed(group.getCost());
+                                }
+                            }, executor)
+                                    .whenComplete((ignored, ex) -> admission.release(weight))
+                    );
+                } else {
+                    prefetch.acquire();
+                    futures.add(
+                            CompletableFuture.runAsync(transformer::prepare, ioExecutor)
+                                    .thenRunAsync(() -> {
+                                        transformer.process();
+                                        output.submit(group.getKey(), transformer.getNodes(), transformer.getEdges());
+                                        progress.completed(group.getCost(), transformer.getNodes().size(), transformer.getEdges().size());
+                                    }, executor)
+                                    .exceptionally(ex -> {
+                                        ex.printStackTrace();
+                                        progress.failed(group.getCost());
+                                        return null;
+                                    })
+                                    .whenComplete((ignored, ex) -> {
+                                        prefetch.release();
+                                        admission.release(weight);
+                                    })
+                    );
+                }
             }
 
             // Wait for all futures to complete
             CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            progress.close();
+            System.out.println(CallResolutionCounters.summary());
+            if (ResolutionComparison.getGroups() > 0) {
+                System.out.println(ResolutionComparison.summary(configuration.getResolutionMode()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } finally {
             // Ensure proper shutdown of the executor
             executor.shutdown();
+            if (ioExecutor != null) {
+                ioExecutor.shutdown();
+            }
             try {
                 if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
                     executor.shutdownNow(); // Force shutdown if tasks don't terminate in time
@@ -73,17 +215,105 @@ public class App {
             } catch (InterruptedException e) {
                 executor.shutdownNow();
             }
+
+            // Flush whatever is still queued once no worker can submit anymore
+            try {
+                output.close();
+            } finally {
+                journal.close();
+                closeMethodSourceSink(methodSourceSink);
+                if (gitSources != null) {
+                    gitSources.close();
+                }
+                if (groupReader != null) {
+                    groupReader.close();
+                }
+            }
         }
+    }
 
-        writeCsv(configuration, nodes, "nodes.csv");
-        writeCsv(configuration, edges, "edges.csv");
+    private MethodSourceSink createMethodSourceSink(Configuration configuration) {
+        var outputDirectory = new File(configuration.getOutputDirectory());
+        if (configuration.isPackedMethods()) {
+            return new PackedMethodSourceSink(outputDirectory, configuration.isResume());
+        }
+
+        return new FileMethodSourceSink(outputDirectory);
+    }
+
+    private void closeMethodSourceSink(MethodSourceSink methodSourceSink) {
+        try {
+            methodSourceSink.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private ExecutorService createIoExecutor(Configuration configuration) {
+        if (!configuration.isVirtualThreads()) {
+            return null;
+        }
+
+        // The build targets Java 17, so virtual threads are only used when the runtime provides them
+        try {
+            var factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.out.println("Virtual threads require Java 21 or newer, copying sources on the worker threads instead");
+            return null;
+        }
+    }
+
+    // Start the most expensive groups first so that one huge class does not become the tail of the run
+    private List<FileGroup> scheduleLargestFirst(ClassSourceProvider classSourceProvider, Map<String, List<BugRecordInput>> fileMap) {
+        var groups = new ArrayList<FileGroup>(fileMap.size());
+        for (var entry : fileMap.entrySet()) {
+            groups.add(new FileGroup(entry.getKey(), entry.getValue(), classSourceProvider.size(entry.getValue().get(0))));
+        }
+
+        groups.sort(Comparator.comparingLong(FileGroup::getCost).reversed());
+        return groups;
+    }
+
+    // The same for a stream of groups, choosing the most expensive among the next window groups
+    private Iterator<FileGroup> largestFirst(Iterator<FileGroup> groups, int window) {
+        var ready = new PriorityQueue<FileGroup>(Comparator.comparingLong(FileGroup::getCost).reversed());
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                fill();
+                return !ready.isEmpty();
+            }
+
+            @Override
+            public FileGroup next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return ready.poll();
+            }
+
+            private void fill() {
+                while (ready.size() < window && groups.hasNext()) {
+                    ready.add(groups.next());
+                }
+            }
+        };
     }
 
     private void preparePredictionData(Configuration configuration) {
-        ClassFileTransformer transformer = new ClassFileTransformer(configuration);
-        transformer.run();
-        writeCsv(configuration, transformer.getNodes(), "nodes.csv");
-        writeCsv(configuration, transformer.getEdges(), "edges.csv");
+        var methodSourceSink = createMethodSourceSink(configuration);
+        ClassFileTransformer transformer = new ClassFileTransformer(configuration, methodSourceSink);
+        try {
+            transformer.run();
+        } finally {
+            closeMethodSourceSink(methodSourceSink);
+        }
+        try (var ignored = Metrics.time(Metrics.Stage.OUTPUT_WRITE)) {
+            writeCsv(configuration, transformer.getNodes(), "nodes.csv");
+            writeCsv(configuration, transformer.getEdges(), "edges.csv");
+        }
+        Metrics.written(transformer.getNodes().size(), transformer.getEdges());
     }
 
     private <T> void writeCsv(Configuration configuration, List<T> outputs, String name) {
@@ -100,16 +330,24 @@ public class App {
     private Map<String, List<BugRecordInput>> groupSameFile(List<BugRecordInput> records) {
         var fileMap = new HashMap<String, List<BugRecordInput>>();
         for (var record : records) {
-            var splindex = record.getParent().indexOf("$");
-            var adjustedParent = record.getParent().substring(0, splindex < 0 ? record.getParent().length() : splindex);
-            var id = record.getProject() + "#" + record.getHash() + "://" + adjustedParent;
-            var list = fileMap.computeIfAbsent(id, k -> new ArrayList<>());
+            var list = fileMap.computeIfAbsent(FileGroup.keyOf(record), k -> new ArrayList<>());
             list.add(record);
         }
 
         return fileMap;
     }
 
+    // Whether the file group belongs to this shard, by a hash of its key that is the same on every machine
+    private static boolean isInShard(Configuration configuration, String key) {
+        if (configuration.getShardCount() <= 1) {
+            return true;
+        }
+
+        var crc = new CRC32();
+        crc.update(key.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue() % configuration.getShardCount() == configuration.getShardIndex();
+    }
+
     private Configuration getConfiguration(String[] args) {
         ArgumentParser parser = ArgumentParsers.newFor("Method Extractor").build()
                 .defaultHelp(true)
@@ -127,9 +365,75 @@ public class App {
                 .setDefault("output")
                 .help("The output directory for all the result files");
 
+        parser.addArgument("--git")
+                .help("Directory with a git clone of every project. The input is then BugHunter's method-p.csv, and class sources are read from the commits without extract.py.");
+
+        parser.addArgument("--shard")
+                .help("Only process shard i of N (i from 0 to N-1), written as i/N. Shards get disjoint ids, combine their outputs with the merge command.");
+
+        parser.addArgument("--threads")
+                .type(Integer.class)
+                .setDefault(Runtime.getRuntime().availableProcessors())
+                .help("The number of worker threads used to parse and transform file groups");
+
+        parser.addArgument("--virtual-threads")
+                .action(Arguments.storeTrue())
+                .help("Copy class sources on virtual threads ahead of the workers. Requires Java 21 or newer at runtime.");
+
+        parser.addArgument("--packed-methods")
+                .action(Arguments.storeTrue())
+                .help("Append method sources to one methods.seg file per project with a methods.idx index instead of writing a file per method.");
+
+        parser.addArgument("--resolution")
+                .choices("syntactic", "hybrid", "full")
+                .setDefault("full")
+                .help("How method calls are connected: syntactic matches names within the class only, hybrid asks the symbol solver only when a name is ambiguous, full always asks it");
+
+        parser.addArgument("--resolution-sample")
+                .type(Double.class)
+                .setDefault(0.0)
+                .help("Fraction of file groups to also run with full resolution, reporting how much the edges differ");
+
+        parser.addArgument("--prune-tests")
+                .action(Arguments.storeTrue())
+                .help("Stop expanding call graphs at test methods. Faster on test heavy classes, but methods only called from tests are no longer emitted.");
+
+        parser.addArgument("--cache-dir")
+                .help("Directory of a cache of file group results that is kept between runs. Groups with the same class content and records are not parsed again.");
+
+        parser.addArgument("--cache-size")
+                .type(Long.class)
+                .setDefault(1024L)
+                .help("Size limit of the result cache in MB, the least recently used entries are removed beyond it");
+
+        parser.addArgument("--memory-budget")
+                .type(Long.class)
+                .setDefault(0L)
+                .help("Heap in MB that the file groups in flight may take together, estimated from their source size. Defaults to half of the maximum heap.");
+
+        parser.addArgument("--progress-interval")
+                .type(Long.class)
+                .setDefault(10L)
+                .help("Seconds between progress reports with throughput and ETA, 0 to only report when the run ends");
+
+        parser.addArgument("--verbose")
+                .action(Arguments.storeTrue())
+                .help("Log every processed node and unmatched long name. Written from a background thread, lines are dropped rather than slowing the workers down.");
+
+        parser.addArgument("--resume")
+                .action(Arguments.storeTrue())
+                .help("Continue an interrupted training run in the same output directory, skipping the file groups in its journal.");
+
         Namespace ns = null;
+        int[] shard = {0, 1};
         try {
             ns = parser.parseArgs(args);
+            if (ns.getString("shard") != null) {
+                shard = parseShard(parser, ns.getString("shard"));
+            }
+            if (ns.getInt("threads") < 1) {
+                throw new ArgumentParserException("--threads must be at least 1, got " + ns.getInt("threads"), parser);
+            }
         } catch (ArgumentParserException e) {
             parser.handleError(e);
             System.exit(1);
@@ -138,17 +442,63 @@ public class App {
         return new Configuration()
                 .setFileName(ns.getString("input"))
                 .setInputDirectory(ns.getString("working_directory"))
-                .setOutputDirectory(ns.getString("output"));
+                .setOutputDirectory(ns.getString("output"))
+                .setGitDirectory(ns.getString("git"))
+                .setShardIndex(shard[0])
+                .setShardCount(shard[1])
+                .setThreads(ns.getInt("threads"))
+                .setVirtualThreads(ns.getBoolean("virtual_threads"))
+                .setPackedMethods(ns.getBoolean("packed_methods"))
+                .setResolutionMode(ResolutionMode.valueOf(ns.getString("resolution").toUpperCase()))
+                .setResolutionSample(ns.getDouble("resolution_sample"))
+                .setPruneTests(ns.getBoolean("prune_tests"))
+                .setCacheDirectory(ns.getString("cache_dir"))
+                .setCacheSize(ns.getLong("cache_size"))
+                .setResume(ns.getBoolean("resume"))
+                .setMemoryBudget(ns.getLong("memory_budget"))
+                .setVerbose(ns.getBoolean("verbose"))
+                .setProgressInterval(ns.getLong("progress_interval"));
     }
 
 
-    private List<BugRecordInput> getRecords(Configuration configuration) {
-        try (var reader = new FileReader(configuration.getFileName())) {
-            var csvReader = new CsvToBeanBuilder<BugRecordInput>(reader)
-                    .withType(BugRecordInput.class)
-                    .build();
+    private int[] parseShard(ArgumentParser parser, String value) throws ArgumentParserException {
+        var split = value.indexOf('/');
+        try {
+            if (split > 0) {
+                int index = Integer.parseInt(value.substring(0, split));
+                int count = Integer.parseInt(value.substring(split + 1));
+                if (count > 0 && index >= 0 && index < count) {
+                    return new int[]{index, count};
+                }
+            }
+        } catch (NumberFormatException ignored) {
+        }
+
+        throw new ArgumentParserException("--shard must be i/N with 0 <= i < N, got " + value, parser);
+    }
+
+    // Reads method-p.csv as published by BugHunter, the source file is filled in later
+    private List<BugRecordInput> getBugHunterRecords(Configuration configuration) {
+        try (var ignored = Metrics.time(Metrics.Stage.CSV_READ);
+             var reader = new CSVReader(new FileReader(configuration.getFileName()))) {
+            reader.skip(1);
+            var records = new ArrayList<BugRecordInput>();
+            for (var row : reader) {
+                // mct is left out of the dataset
+                if (row[0].equals("mct")) {
+                    continue;
+                }
+
+                var record = new BugRecordInput();
+                record.setProject(row[0]);
+                record.setHash(row[1]);
+                record.setLongName(row[2]);
+                record.setParent(row[3]);
+                record.setNumberOfBugs(Integer.parseInt(row[76].trim()));
+                records.add(record);
+            }
 
-            return csvReader.stream().toList();
+            return records;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,115 @@
+package me.jacob;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.CSVWriter;
+import com.opencsv.RFC4180ParserBuilder;
+import com.opencsv.exceptions.CsvValidationException;
+import me.jacob.entities.BugRecordInput;
+import me.jacob.util.Interner;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Reads method-p-source.csv one record at a time. Columns are looked up by name once from the header
+ * instead of binding every row by reflection. The hash, source file and parent of a row repeat for every
+ * method of a class, so they are shared with the record before when equal; only the few project names are
+ * kept for the whole file, so nothing retained grows with the input.
+ */
+public class BugRecordReader implements AutoCloseable {
+
+    private static final String[] HEADER = {"Project", "Source-file", "Hash", "Long-Name", "Parent", "Number-Of-Bugs"};
+
+    private final CSVReader reader;
+
+    private final Interner projects;
+
+    private final int[] columns;
+
+    // Empty until the first record, so the first values are never shared
+    private BugRecordInput previous;
+
+    public BugRecordReader(File file) {
+        this.projects = new Interner();
+        this.previous = new BugRecordInput();
+        try {
+            // Python's csv module escapes quotes by doubling them and leaves backslashes alone, as does createWriter
+            this.reader = new CSVReaderBuilder(new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16))
+                    .withCSVParser(new RFC4180ParserBuilder().build())
+                    .build();
+            var header = reader.readNext();
+            if (header == null) {
+                header = HEADER;
+            }
+            this.columns = new int[HEADER.length];
+            for (int i = 0; i < HEADER.length; i++) {
+                columns[i] = indexOf(file, header, HEADER[i]);
+            }
+        } catch (IOException | CsvValidationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Header names are matched ignoring case, like the bean binding did
+    private static int indexOf(File file, String[] header, String column) {
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].trim().toUpperCase(Locale.ROOT).equals(column.toUpperCase(Locale.ROOT))) {
+                return i;
+            }
+        }
+
+        throw new IllegalStateException(file + " has no " + column + " column");
+    }
+
+    /** The next record, or null at the end of the file. */
+    public BugRecordInput read() {
+        try {
+            String[] row;
+            do {
+                row = reader.readNext();
+                if (row == null) {
+                    return null;
+                }
+            } while (row.length == 1 && row[0].isEmpty());
+
+            var record = new BugRecordInput();
+            record.setProject(projects.intern(row[columns[0]]));
+            record.setSourceFile(share(row[columns[1]], previous.getSourceFile()));
+            record.setHash(share(row[columns[2]], previous.getHash()));
+            record.setLongName(row[columns[3]]);
+            record.setParent(share(row[columns[4]], previous.getParent()));
+            record.setNumberOfBugs(Integer.parseInt(row[columns[5]].trim()));
+            previous = record;
+            return record;
+        } catch (IOException | CsvValidationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String share(String value, String previous) {
+        return value.equals(previous) ? previous : value;
+    }
+
+    /** Opens a writer for files in the same format, with the header already written. */
+    public static CSVWriter createWriter(File file) throws IOException {
+        var writer = new CSVWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16));
+        writer.writeNext(HEADER);
+        return writer;
+    }
+
+    public static void write(CSVWriter writer, BugRecordInput record) {
+        writer.writeNext(new String[]{record.getProject(), record.getSourceFile(), record.getHash(), record.getLongName(),
+                record.getParent(), String.valueOf(record.getNumberOfBugs())});
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -1,19 +1,14 @@
 package me.jacob;
 
-import com.github.javaparser.JavaParser;
 import com.github.javaparser.ParseResult;
-import com.github.javaparser.ParserConfiguration;
 import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.Node;
-import com.github.javaparser.symbolsolver.JavaSymbolSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
 import me.jacob.entities.*;
 
 import java.io.*;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BugRecordTransformer implements Runnable {
 
@@ -22,17 +17,32 @@ public class BugRecordTransformer implements Runnable {
 
     private final Configuration configuration;
 
+    private final ClassSourceProvider classSourceProvider;
+
+    private final MethodSourceSink methodSourceSink;
+
+    // Null when results are not cached between runs
+    private final ResultCache resultCache;
+
     private final List<BugRecordOutput> nodes;
 
     private final List<EdgeOutput> edges;
 
     private String classSourceName;
 
+    private String contentHash;
+
+    private File sourceFile;
+
     private BugRecordInput firstInput;
 
-    public BugRecordTransformer(Collection<BugRecordInput> inputs, Configuration configuration) {
+    public BugRecordTransformer(Collection<BugRecordInput> inputs, Configuration configuration, ClassSourceProvider classSourceProvider,
+                                MethodSourceSink methodSourceSink, ResultCache resultCache) {
         this.inputs = inputs;
         this.configuration = configuration;
+        this.classSourceProvider = classSourceProvider;
+        this.methodSourceSink = methodSourceSink;
+        this.resultCache = resultCache;
         this.edges = new ArrayList<>();
         this.nodes = new ArrayList<>();
         this.firstInput = inputs.stream().findFirst().get();
@@ -41,72 +51,208 @@ public class BugRecordTransformer implements Runnable {
 
     @Override
     public void run() {
-        try {
-            var sourceFile = createSourceFile();
-            var parseResult = parse(sourceFile);
-            parseResult.ifSuccessful(this::transform);
+        prepare();
+        process();
+    }
+
+    // Stores the class source in the output, this is the I/O bound half of the work
+    public void prepare() {
+        try (var ignored = Metrics.time(Metrics.Stage.SOURCE_COPY)) {
+            sourceFile = createSourceFile();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private ParseResult<CompilationUnit> parse(File sourceFile) throws FileNotFoundException {
-        ReflectionTypeSolver reflectionTypeSolver = new ReflectionTypeSolver();
-
-        CombinedTypeSolver combinedTypeSolver = new CombinedTypeSolver();
-        combinedTypeSolver.add(reflectionTypeSolver);
-
-        JavaSymbolSolver symbolSolver = new JavaSymbolSolver(combinedTypeSolver);
-        ParserConfiguration parserConfig = new ParserConfiguration().setSymbolResolver(symbolSolver);
+    public void process() {
+        try {
+            var cacheKey = resultCache == null ? null : resultCache.key(contentHash, inputs, cacheVariant());
+            if (cacheKey != null) {
+                var cached = resultCache.get(cacheKey);
+                if (cached != null) {
+                    emit(cached);
+                    return;
+                }
+            }
 
-        JavaParser parser = new JavaParser(parserConfig);
-        return parser.parse(sourceFile);
+            ParseResult<CompilationUnit> parseResult;
+            try (var ignored = Metrics.time(Metrics.Stage.PARSE)) {
+                parseResult = ParserPool.parse(sourceFile);
+            }
+            if (!parseResult.isSuccessful()) {
+                Metrics.parseFailure();
+            }
+            parseResult.ifSuccessful(cu -> {
+                var entry = transform(cu);
+                if (entry != null && cacheKey != null) {
+                    resultCache.put(cacheKey, entry);
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     private File createSourceFile() throws IOException {
-        var originalSourceFile = new File(configuration.getInputDirectory(), firstInput.getSourceFile());
-        var id = UUID.randomUUID();
-        var newSourceFile = Path.of(configuration.getOutputDirectory(), firstInput.getProject(), "classes", id + ".java").toFile();
-        this.classSourceName = Path.of(firstInput.getProject(), "classes", id + ".java").toString();
-        copySourceFile(originalSourceFile, newSourceFile);
-        return newSourceFile;
+        var storedName = classSourceProvider.store(firstInput);
+        this.classSourceName = storedName.toString();
+        this.contentHash = ClassSourceStore.contentHash(storedName);
+        return Path.of(configuration.getOutputDirectory(), classSourceName).toFile();
     }
 
-    private void copySourceFile(File originalSourceFile, File newSourceFile) throws IOException {
-        if (!newSourceFile.exists()) {
-            newSourceFile.toPath().getParent().toFile().mkdirs();
-        }
-
-        Files.copy(originalSourceFile.toPath(), newSourceFile.toPath());
+    // The settings that change the result of a group
+    private String cacheVariant() {
+        return configuration.getResolutionMode().name() + (configuration.isPruneTests() ? ",prune-tests" : "");
     }
 
-    private void transform(CompilationUnit cu) {
+    // Returns the result for the cache, or null if the group failed part way
+    private ResultCache.Entry transform(CompilationUnit cu) {
         try {
+            var index = new CompilationUnitIndex(cu);
             List<SdpMethod> calcNodes = new ArrayList<>();
-            for (var input : inputs) {
-                var nameMatcher = new NameMatcher(cu, input.getLongName());
-                nameMatcher.calculateMatchingNode();
-                var result = nameMatcher.getResult();
-                if (result == null) {
-                    System.out.println("Unable to match " + input.getLongName());
-                    continue;
+            try (var ignored = Metrics.time(Metrics.Stage.NAME_MATCH)) {
+                for (var input : inputs) {
+                    var nameMatcher = new NameMatcher(index, input.getLongName());
+                    nameMatcher.calculateMatchingNode();
+                    var result = nameMatcher.getResult();
+                    if (result == null) {
+                        if (DebugLog.isEnabled()) {
+                            DebugLog.log("Unable to match " + input.getLongName());
+                        }
+                        Metrics.unmatchedLongName();
+                        continue;
+                    }
+                    calcNodes.add(createSdpMethod(input, nameMatcher));
                 }
-                calcNodes.add(createSdpMethod(input, nameMatcher));
             }
 
-            var transformer = new MethodListTransformer(calcNodes, cu);
-            transformer.transform(cu);
+            var resolutionMode = configuration.getResolutionMode();
+            var compareWithFull = resolutionMode != ResolutionMode.FULL
+                    && ThreadLocalRandom.current().nextDouble() < configuration.getResolutionSample();
+            // The transformer changes its nodes, so the comparison starts from copies
+            var fullNodes = compareWithFull ? copyForComparison(calcNodes) : null;
+
+            var nodeFilter = NodeFilter.EXCLUDE_TESTS.withPrune(configuration.isPruneTests());
+            var transformer = new MethodListTransformer(calcNodes, index, resolutionMode, nodeFilter, IdGenerator::getNodeId, IdGenerator::getGraphId);
+            transformer.transform();
 
-            for (var node : transformer.getMethods()) {
-                this.nodes.add(convertToOutput(node));
-                System.out.println("Processed " + node.getId() + ", " + node.getSignature());
+            if (compareWithFull) {
+                try (var ignored = Metrics.time(Metrics.Stage.RESOLUTION_SAMPLE)) {
+                    var localIds = new AtomicInteger();
+                    var fullTransformer = new MethodListTransformer(fullNodes, index, ResolutionMode.FULL, nodeFilter, localIds::getAndIncrement, localIds::getAndIncrement);
+                    fullTransformer.transform(false);
+                    ResolutionComparison.record(edgeKeys(transformer.getEdges()), edgeKeys(fullTransformer.getEdges()));
+                }
             }
 
-            for (var edge : transformer.getEdges()) {
-                this.edges.add(convertToOutput(edge));
+            try (var ignored = Metrics.time(Metrics.Stage.OUTPUT_WRITE)) {
+                for (var node : transformer.getMethods()) {
+                    this.nodes.add(convertToOutput(node));
+                    if (DebugLog.isEnabled()) {
+                        DebugLog.log("Processed " + node.getId() + ", " + node.getSignature());
+                    }
+                }
+
+                for (var edge : transformer.getEdges()) {
+                    this.edges.add(convertToOutput(edge));
+                }
             }
+
+            return createCacheEntry(transformer);
         } catch (Exception ex) {
             ex.printStackTrace();
+            return null;
+        }
+    }
+
+    // Copies under ids that are only used for the comparison run, so it does not use up real ones
+    private List<SdpMethod> copyForComparison(List<SdpMethod> methods) {
+        var copies = new ArrayList<SdpMethod>(methods.size());
+        var ids = -1;
+        for (var method : methods) {
+            var copy = new SdpMethod();
+            copy.setId(ids--);
+            copy.setProject(method.getProject());
+            copy.setHash(method.getHash());
+            copy.setParent(method.getParent());
+            copy.setNumberOfBugs(method.getNumberOfBugs());
+            copy.setOldLongName(method.getOldLongName());
+            copy.setSource(method.getSource());
+            copy.setClassSourceFile(method.getClassSourceFile());
+            copy.setSignature(method.getSignature());
+            copies.add(copy);
+        }
+
+        return copies;
+    }
+
+    // Edges by the position of their declarations, which identifies them within the unit
+    private static Set<String> edgeKeys(List<SdpEdge> edges) {
+        var keys = new HashSet<String>(edges.size() * 2);
+        for (var edge : edges) {
+            keys.add(edge.getSource().getSource().getRange().map(Object::toString).orElse(edge.getSource().getSignature())
+                    + "->" + edge.getDestination().getSource().getRange().map(Object::toString).orElse(edge.getDestination().getSignature()));
+        }
+
+        return keys;
+    }
+
+    private ResultCache.Entry createCacheEntry(MethodListTransformer transformer) {
+        var positions = new HashMap<Integer, Integer>();
+        var graphs = new HashMap<Integer, Integer>();
+        var nodeGraphs = new int[transformer.getMethods().size()];
+        var cachedEdges = new ArrayList<ResultCache.Edge>(transformer.getEdges().size());
+        for (var method : transformer.getMethods()) {
+            positions.put(method.getId(), positions.size());
+        }
+
+        // Nodes without edges never get a graph id assigned
+        Arrays.fill(nodeGraphs, -1);
+        for (var edge : transformer.getEdges()) {
+            var graph = graphs.computeIfAbsent(edge.getGraphId(), x -> graphs.size());
+            var source = positions.get(edge.getSource().getId());
+            var destination = positions.get(edge.getDestination().getId());
+            nodeGraphs[source] = graph;
+            nodeGraphs[destination] = graph;
+            cachedEdges.add(new ResultCache.Edge(source, destination, graph));
+        }
+
+        var cachedNodes = new ArrayList<ResultCache.Node>(transformer.getMethods().size());
+        for (var method : transformer.getMethods()) {
+            var graph = nodeGraphs[positions.get(method.getId())];
+            cachedNodes.add(new ResultCache.Node(method.getSignature(), method.getParent(), method.getOldLongName(),
+                    method.getNumberOfBugs(), graph, method.getSource().toString()));
+        }
+
+        return new ResultCache.Entry(cachedNodes, cachedEdges);
+    }
+
+    // Emits a cached result with fresh node and graph ids
+    private void emit(ResultCache.Entry entry) throws IOException {
+        try (var ignored = Metrics.time(Metrics.Stage.OUTPUT_WRITE)) {
+            emitWithNewIds(entry);
+        }
+    }
+
+    private void emitWithNewIds(ResultCache.Entry entry) throws IOException {
+        var graphIds = new int[entry.edges().stream().mapToInt(ResultCache.Edge::graph).max().orElse(-1) + 1];
+        for (int i = 0; i < graphIds.length; i++) {
+            graphIds[i] = IdGenerator.getGraphId();
+        }
+
+        var ids = new int[entry.nodes().size()];
+        for (int i = 0; i < ids.length; i++) {
+            var node = entry.nodes().get(i);
+            ids[i] = IdGenerator.getNodeId();
+            var graphId = node.graph() < 0 ? 0 : graphIds[node.graph()];
+            this.nodes.add(createOutput(ids[i], node.signature(), node.parent(), node.oldLongName(), node.numberOfBugs(), graphId, node.source()));
+            if (DebugLog.isEnabled()) {
+                DebugLog.log("Processed " + ids[i] + ", " + node.signature());
+            }
+        }
+
+        for (var edge : entry.edges()) {
+            this.edges.add(new EdgeOutput(ids[edge.source()], ids[edge.destination()], graphIds[edge.graph()]));
         }
     }
 
@@ -115,20 +261,24 @@ public class BugRecordTransformer implements Runnable {
     }
 
     private BugRecordOutput convertToOutput(SdpMethod node) throws IOException {
+        return createOutput(node.getId(), node.getSignature(), node.getParent(), node.getOldLongName(), node.getNumberOfBugs(),
+                node.getGraphId(), node.getSource().toString());
+    }
+
+    private BugRecordOutput createOutput(int id, String signature, String parent, String oldLongName, int numberOfBugs, int graphId,
+                                         String source) throws IOException {
         var output = new BugRecordOutput();
-        var methodPath = Path.of(node.getProject(), "methods", node.getId() + ".java");
-        writeNodeToFile(node.getSource(), Path.of(configuration.getOutputDirectory(), methodPath.toString()).toString());
-        output.setId(node.getId());
-        output.setHash(node.getHash());
-        output.setParent(node.getParent());
-        output.setProject(node.getProject());
-        output.setMethodSourceFile(methodPath.toString());
-        output.setClassSourceFile(node.getClassSourceFile());
-        output.setId(node.getId());
-        output.setNumberOfBugs(node.getNumberOfBugs());
-        output.setSignature(node.getSignature());
-        output.setGraphId(node.getGraphId());
-        output.setOldLongName(node.getOldLongName());
+        var methodSourceFile = methodSourceSink.write(firstInput.getProject(), id, source);
+        output.setId(id);
+        output.setHash(firstInput.getHash());
+        output.setParent(parent);
+        output.setProject(firstInput.getProject());
+        output.setMethodSourceFile(methodSourceFile);
+        output.setClassSourceFile(classSourceName);
+        output.setNumberOfBugs(numberOfBugs);
+        output.setSignature(signature);
+        output.setGraphId(graphId);
+        output.setOldLongName(oldLongName);
         return output;
     }
 
@@ -146,20 +296,6 @@ public class BugRecordTransformer implements Runnable {
         return output;
     }
 
-    private void writeNodeToFile(Node node, String fileName) throws IOException {
-        var file = new File(fileName);
-        if (!file.exists()) {
-            file.toPath().getParent().toFile().mkdirs();
-            file.createNewFile();
-        }
-
-        try (var fileWriter = new FileWriter(file)) {
-            try (BufferedWriter writer = new BufferedWriter(fileWriter)) {
-                writer.write(node.toString());
-            }
-        }
-    }
-
     public Collection<BugRecordOutput> getNodes() {
         return nodes;
     }
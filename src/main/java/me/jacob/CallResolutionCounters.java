@@ -0,0 +1,70 @@
+package me.jacob;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Run wide tallies of how call sites in MethodContextFetcher were connected, to see where the
+ * symbol solver time goes.
+ */
+public class CallResolutionCounters {
+
+    // The symbol solver found the declaration
+    private static final LongAdder Resolved = new LongAdder();
+
+    // Resolution failed and the call was matched by name within the class instead
+    private static final LongAdder Fallback = new LongAdder();
+
+    // Resolution failed and nothing matched
+    private static final LongAdder Missed = new LongAdder();
+
+    // Connected, or ruled out, by name without asking the symbol solver
+    private static final LongAdder Syntactic = new LongAdder();
+
+    // The call site was seen before in the same compilation unit
+    private static final LongAdder Cached = new LongAdder();
+
+    public static void resolved() {
+        Resolved.increment();
+    }
+
+    public static void fallback() {
+        Fallback.increment();
+    }
+
+    public static void missed() {
+        Missed.increment();
+    }
+
+    public static void syntactic() {
+        Syntactic.increment();
+    }
+
+    public static void cached() {
+        Cached.increment();
+    }
+
+    public static long getResolved() {
+        return Resolved.sum();
+    }
+
+    public static long getFallback() {
+        return Fallback.sum();
+    }
+
+    public static long getMissed() {
+        return Missed.sum();
+    }
+
+    public static long getSyntactic() {
+        return Syntactic.sum();
+    }
+
+    public static long getCached() {
+        return Cached.sum();
+    }
+
+    public static String summary() {
+        return "Call sites: " + getResolved() + " resolved, " + getFallback() + " by name fallback, "
+                + getMissed() + " unresolved, " + getSyntactic() + " by name only, " + getCached() + " reused from cache";
+    }
+}
@@ -0,0 +1,192 @@
+package me.jacob;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Append-only record of the file groups whose output has been flushed to nodes.csv and edges.csv.
+ * Each line holds the group key, the size of both files once its rows were written and the node and
+ * graph id ranges it emitted:
+ * <pre>key \t nodesBytes \t edgesBytes \t firstNodeId \t lastNodeId \t firstGraphId \t lastGraphId</pre>
+ * A line only counts once it is complete, so a run killed while writing one resumes from the line before.
+ * Both files are forced to disk before their line is written and the journal after it, and on loading a line
+ * also stops counting when the files are shorter than it says, as after a crash of the machine.
+ */
+public class CheckpointJournal implements AutoCloseable {
+
+    public static final String FILE_NAME = "journal.tsv";
+
+    private static final int FIELDS = 7;
+
+    private final Set<String> completed;
+
+    // The groups of earlier runs, fixed once loaded so it can be read while the writer thread records new ones
+    private final Set<String> resumed;
+
+    private final Writer writer;
+
+    private final FileChannel channel;
+
+    private long nodeBytes;
+
+    private long edgeBytes;
+
+    private int maxNodeId = -1;
+
+    private int maxGraphId = -1;
+
+    /**
+     * Opens the journal in the output directory. Without {@code resume} any previous journal is discarded,
+     * otherwise its complete lines are loaded and new entries are appended after them.
+     */
+    public CheckpointJournal(File directory, boolean resume) {
+        this.completed = new HashSet<>();
+        var file = new File(directory, FILE_NAME);
+        try {
+            directory.mkdirs();
+            long validBytes = resume && file.exists() ? load(file, directory) : 0;
+            this.resumed = Set.copyOf(completed);
+            try (var channel = new RandomAccessFile(file, "rw").getChannel()) {
+                channel.truncate(validBytes);
+            }
+            var stream = new FileOutputStream(file, true);
+            this.channel = stream.getChannel();
+            this.writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private CheckpointJournal(File file) throws IOException {
+        this.completed = new HashSet<>();
+        this.writer = null;
+        this.channel = null;
+        if (file.exists()) {
+            load(file, file.getParentFile());
+        }
+        this.resumed = Set.copyOf(completed);
+    }
+
+    /** Reads the journal in the output directory of another run without changing it, {@link #record} is not available. */
+    public static CheckpointJournal read(File directory) {
+        try {
+            return new CheckpointJournal(new File(directory, FILE_NAME));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Returns the length of the journal up to and including its last complete line whose rows are on disk
+    private long load(File file, File directory) throws IOException {
+        long nodesLength = new File(directory, "nodes.csv").length();
+        long edgesLength = new File(directory, "edges.csv").length();
+        var content = Files.readString(file.toPath(), StandardCharsets.UTF_8);
+        long validBytes = 0;
+        int start = 0;
+        int end;
+        while ((end = content.indexOf('\n', start)) >= 0) {
+            var fields = content.substring(start, end).split("\t");
+            if (fields.length != FIELDS) {
+                break;
+            }
+
+            try {
+                long lineNodeBytes = Long.parseLong(fields[1]);
+                long lineEdgeBytes = Long.parseLong(fields[2]);
+                int lineMaxNodeId = Integer.parseInt(fields[4]);
+                int lineMaxGraphId = Integer.parseInt(fields[6]);
+                if (lineNodeBytes > nodesLength || lineEdgeBytes > edgesLength) {
+                    System.out.println(file + " records more than nodes.csv and edges.csv hold, only its first "
+                            + completed.size() + " entries are used");
+                    break;
+                }
+
+                nodeBytes = lineNodeBytes;
+                edgeBytes = lineEdgeBytes;
+                maxNodeId = Math.max(maxNodeId, lineMaxNodeId);
+                maxGraphId = Math.max(maxGraphId, lineMaxGraphId);
+            } catch (NumberFormatException e) {
+                break;
+            }
+
+            completed.add(fields[0]);
+            validBytes += content.substring(start, end + 1).getBytes(StandardCharsets.UTF_8).length;
+            start = end + 1;
+        }
+
+        return validBytes;
+    }
+
+    /** Whether an earlier run completed the group, groups recorded by this run are not included. */
+    public boolean isCompleted(String key) {
+        return resumed.contains(key);
+    }
+
+    public int getCompletedCount() {
+        return completed.size();
+    }
+
+    /** Size of nodes.csv when the last journaled group was flushed, anything past it is uncommitted. */
+    public long getNodeBytes() {
+        return nodeBytes;
+    }
+
+    public long getEdgeBytes() {
+        return edgeBytes;
+    }
+
+    public int getMaxNodeId() {
+        return maxNodeId;
+    }
+
+    public int getMaxGraphId() {
+        return maxGraphId;
+    }
+
+    /**
+     * Records a group as done. Must only be called after its rows were forced to disk, the writer thread
+     * is the only caller so entries appear in the same order as the rows. The entry is only safe from a
+     * crash of the machine after the next {@link #sync}.
+     */
+    public void record(String key, long nodeBytes, long edgeBytes, int firstNodeId, int lastNodeId, int firstGraphId, int lastGraphId) {
+        try {
+            writer.write(key + "\t" + nodeBytes + "\t" + edgeBytes + "\t" + firstNodeId + "\t" + lastNodeId
+                    + "\t" + firstGraphId + "\t" + lastGraphId + "\n");
+            writer.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        completed.add(key);
+        this.nodeBytes = nodeBytes;
+        this.edgeBytes = edgeBytes;
+        this.maxNodeId = Math.max(maxNodeId, lastNodeId);
+        this.maxGraphId = Math.max(maxGraphId, lastGraphId);
+    }
+
+    /** Forces the entries recorded so far to disk. */
+    public void sync() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -1,23 +1,16 @@
 package me.jacob;
 
-import com.github.javaparser.JavaParser;
 import com.github.javaparser.ParseResult;
-import com.github.javaparser.ParserConfiguration;
 import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.BodyDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.Parameter;
-import com.github.javaparser.symbolsolver.JavaSymbolSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
 import me.jacob.entities.ClassRecordOutput;
 import me.jacob.entities.EdgeOutput;
 import me.jacob.entities.SdpEdge;
 import me.jacob.entities.SdpMethod;
 
 import java.io.*;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -25,14 +18,17 @@ public class ClassFileTransformer implements Runnable {
 
     private final Configuration configuration;
 
+    private final MethodSourceSink methodSourceSink;
+
     private final List<ClassRecordOutput> nodes;
 
     private final List<EdgeOutput> edges;
 
     private String classSourceName;
 
-    public ClassFileTransformer(Configuration configuration) {
+    public ClassFileTransformer(Configuration configuration, MethodSourceSink methodSourceSink) {
         this.configuration = configuration;
+        this.methodSourceSink = methodSourceSink;
         this.edges = new ArrayList<>();
         this.nodes = new ArrayList<>();
     }
@@ -41,26 +37,19 @@ public class ClassFileTransformer implements Runnable {
     @Override
     public void run() {
         try {
-            var parseResult = parse(new File(configuration.getFileName()));
+            ParseResult<CompilationUnit> parseResult;
+            try (var ignored = Metrics.time(Metrics.Stage.PARSE)) {
+                parseResult = ParserPool.parse(new File(configuration.getFileName()));
+            }
+            if (!parseResult.isSuccessful()) {
+                Metrics.parseFailure();
+            }
             parseResult.ifSuccessful(this::transform);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private ParseResult<CompilationUnit> parse(File sourceFile) throws FileNotFoundException {
-        ReflectionTypeSolver reflectionTypeSolver = new ReflectionTypeSolver();
-
-        CombinedTypeSolver combinedTypeSolver = new CombinedTypeSolver();
-        combinedTypeSolver.add(reflectionTypeSolver);
-
-        JavaSymbolSolver symbolSolver = new JavaSymbolSolver(combinedTypeSolver);
-        ParserConfiguration parserConfig = new ParserConfiguration().setSymbolResolver(symbolSolver);
-
-        JavaParser parser = new JavaParser(parserConfig);
-        return parser.parse(sourceFile);
-    }
-
     private void transform(CompilationUnit cu) {
         try {
             List<SdpMethod> calcNodes = new ArrayList<>();
@@ -68,15 +57,19 @@ public class ClassFileTransformer implements Runnable {
                 calcNodes.add(createSdpMethod(method, method.getSignature().asString()));
             }
 
-            MethodListTransformer transformer = new MethodListTransformer(calcNodes, cu);
-            transformer.transform(cu);
-            for (var node : transformer.getMethods()) {
-                this.nodes.add(convertToOutput(node));
-                System.out.println("Processed " + node.getId() + ", " + node.getSignature());
-            }
-
-            for (var edge : transformer.getEdges()) {
-                this.edges.add(convertToOutput(edge));
+            MethodListTransformer transformer = new MethodListTransformer(calcNodes, new CompilationUnitIndex(cu));
+            transformer.transform();
+            try (var ignored = Metrics.time(Metrics.Stage.OUTPUT_WRITE)) {
+                for (var node : transformer.getMethods()) {
+                    this.nodes.add(convertToOutput(node));
+                    if (DebugLog.isEnabled()) {
+                        DebugLog.log("Processed " + node.getId() + ", " + node.getSignature());
+                    }
+                }
+
+                for (var edge : transformer.getEdges()) {
+                    this.edges.add(convertToOutput(edge));
+                }
             }
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -90,10 +83,9 @@ public class ClassFileTransformer implements Runnable {
 
     private ClassRecordOutput convertToOutput(SdpMethod node) throws IOException {
         var output = new ClassRecordOutput();
-        var methodPath = "methods" + "/" + node.getId() + ".java";
-        writeNodeToFile(node.getSource(), Path.of(configuration.getOutputDirectory(), methodPath.toString()).toString());
+        var methodSourceFile = methodSourceSink.write("", node.getId(), node.getSource().toString());
         output.setId(node.getId());
-        output.setMethodSourceFile(methodPath.toString());
+        output.setMethodSourceFile(methodSourceFile);
         output.setSignature(node.getSignature());
         output.setGraphId(node.getGraphId());
         return output;
@@ -107,20 +99,6 @@ public class ClassFileTransformer implements Runnable {
         return output;
     }
 
-    private void writeNodeToFile(Node node, String fileName) throws IOException {
-        var file = new File(fileName);
-        if (!file.exists()) {
-            file.toPath().getParent().toFile().mkdirs();
-            file.createNewFile();
-        }
-
-        try (var fileWriter = new FileWriter(file)) {
-            try (BufferedWriter writer = new BufferedWriter(fileWriter)) {
-                writer.write(node.toString());
-            }
-        }
-    }
-
     public List<ClassRecordOutput> getNodes() {
         return nodes;
     }
@@ -0,0 +1,18 @@
+package me.jacob;
+
+import me.jacob.entities.BugRecordInput;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Where the class source of a record comes from.
+ */
+public interface ClassSourceProvider {
+
+    /** Size of the class source in bytes, used to schedule the largest file groups first. */
+    long size(BugRecordInput input);
+
+    /** Puts the class source into the class source store and returns its path relative to the output directory. */
+    Path store(BugRecordInput input) throws IOException;
+}
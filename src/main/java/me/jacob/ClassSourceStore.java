@@ -0,0 +1,117 @@
+package me.jacob;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Keeps one copy of every distinct class source per project under {@code <project>/classes/<sha-256>.java}.
+ * BugHunter has the same class content at many commit hashes, and all of those groups now share a blob.
+ * Blobs are hard linked to the input where the file system allows it and copied with
+ * {@link FileChannel#transferTo} otherwise, always under a temporary name that is moved into place
+ * so that a reader never sees a partial blob.
+ */
+public class ClassSourceStore {
+
+    private final File outputDirectory;
+
+    public ClassSourceStore(File outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * Stores the source of a class and returns the blob path relative to the output directory.
+     */
+    public Path store(String project, File source) throws IOException {
+        var name = Path.of(project, "classes", hash(source) + ".java");
+        var blob = outputDirectory.toPath().resolve(name);
+        if (Files.exists(blob)) {
+            return name;
+        }
+
+        Files.createDirectories(blob.getParent());
+        var temporary = blob.resolveSibling(UUID.randomUUID() + ".tmp");
+        try {
+            try {
+                Files.createLink(temporary, source.toPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                copy(source.toPath(), temporary);
+            }
+
+            // Another worker may have stored the same content meanwhile, the bytes are identical either way
+            Files.move(temporary, blob, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+
+        return name;
+    }
+
+    /**
+     * Stores a class source that is already in memory, e.g. read from a git object database.
+     */
+    public Path store(String project, byte[] content) throws IOException {
+        var name = Path.of(project, "classes", hash(content) + ".java");
+        var blob = outputDirectory.toPath().resolve(name);
+        if (Files.exists(blob)) {
+            return name;
+        }
+
+        Files.createDirectories(blob.getParent());
+        var temporary = blob.resolveSibling(UUID.randomUUID() + ".tmp");
+        try {
+            Files.write(temporary, content, StandardOpenOption.CREATE_NEW);
+            Files.move(temporary, blob, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+
+        return name;
+    }
+
+    /** The content hash of a class source from the path {@link #store} returned for it. */
+    public static String contentHash(Path storedName) {
+        var fileName = storedName.getFileName().toString();
+        return fileName.substring(0, fileName.length() - ".java".length());
+    }
+
+    private static void copy(Path source, Path target) throws IOException {
+        try (var in = FileChannel.open(source, StandardOpenOption.READ);
+             var out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    private static String hash(File source) throws IOException {
+        var digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(source.toPath()), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String hash(byte[] content) {
+        return HexFormat.of().formatHex(sha256().digest(content));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package me.jacob;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.*;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+
+import java.util.*;
+
+/**
+ * Every method and constructor of a compilation unit, collected in a single traversal.
+ * Declarations are keyed both by their JVM style owner path (".Outer$Inner$1.name", relative to the
+ * package, with "<init>" for constructors) and by their simple name.
+ */
+public class CompilationUnitIndex {
+
+    private final CompilationUnit cu;
+
+    private final String packageName;
+
+    private final Map<String, List<CallableDeclaration<?>>> byLongName;
+
+    private final Map<String, List<BodyDeclaration<?>>> byName;
+
+    public CompilationUnitIndex(CompilationUnit cu) {
+        this.cu = cu;
+        this.packageName = cu.getPackageDeclaration().map(p -> p.getNameAsString()).orElse("");
+        this.byLongName = new HashMap<>();
+        this.byName = new HashMap<>();
+        cu.accept(new IndexVisitor(), "");
+    }
+
+    public CompilationUnit getCompilationUnit() {
+        return cu;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    /**
+     * Declarations for a long name with the package and the parameter list cut off,
+     * e.g. ".Outer$1.run" or ".Outer.&lt;init&gt;", in source order.
+     */
+    public List<CallableDeclaration<?>> getCandidates(String ownerAndName) {
+        return byLongName.getOrDefault(ownerAndName, List.of());
+    }
+
+    public Map<String, List<BodyDeclaration<?>>> getDeclarationsByName() {
+        return byName;
+    }
+
+    private void add(String path, String name, CallableDeclaration<?> declaration) {
+        byLongName.computeIfAbsent(path, x -> new ArrayList<>()).add(declaration);
+        byName.computeIfAbsent(name, x -> new ArrayList<>()).add(declaration);
+    }
+
+    /**
+     * Walks the unit with the owner path as argument. Anonymous classes are numbered per enclosing
+     * class in traversal order, the same way javac names them $1, $2, ...
+     */
+    private class IndexVisitor extends VoidVisitorAdapter<String> {
+
+        private final Deque<Integer> anonymousClassStack = new ArrayDeque<>();
+
+        @Override
+        public void visit(final ClassOrInterfaceDeclaration classDeclaration, String path) {
+            anonymousClassStack.push(1);
+            super.visit(classDeclaration, ownerPath(classDeclaration, path));
+            anonymousClassStack.pop();
+        }
+
+        @Override
+        public void visit(final EnumDeclaration enumDeclaration, String path) {
+            anonymousClassStack.push(1);
+            super.visit(enumDeclaration, ownerPath(enumDeclaration, path));
+            anonymousClassStack.pop();
+        }
+
+        @Override
+        public void visit(final RecordDeclaration recordDeclaration, String path) {
+            anonymousClassStack.push(1);
+            super.visit(recordDeclaration, ownerPath(recordDeclaration, path));
+            anonymousClassStack.pop();
+        }
+
+        private String ownerPath(TypeDeclaration<?> type, String path) {
+            return path + (type.isNestedType() ? "$" : ".") + type.getNameAsString();
+        }
+
+        @Override
+        public void visit(final EnumConstantDeclaration enumConstantDec, String path) {
+            if (enumConstantDec.getClassBody().size() > 0) {
+                enumConstantDec.getArguments().forEach(argument -> argument.accept(this, path));
+                visitAnonymousClassBody(enumConstantDec.getClassBody(), path);
+            } else {
+                super.visit(enumConstantDec, path);
+            }
+        }
+
+        @Override
+        public void visit(final ObjectCreationExpr objectCreationExpr, String path) {
+            objectCreationExpr.getAnonymousClassBody().ifPresentOrElse(body -> {
+                objectCreationExpr.getScope().ifPresent(scope -> scope.accept(this, path));
+                objectCreationExpr.getArguments().forEach(argument -> argument.accept(this, path));
+                visitAnonymousClassBody(body, path);
+            }, () -> super.visit(objectCreationExpr, path));
+        }
+
+        private void visitAnonymousClassBody(NodeList<BodyDeclaration<?>> body, String path) {
+            var anonymousClassNumber = anonymousClassStack.pop();
+            anonymousClassStack.push(anonymousClassNumber + 1);
+
+            anonymousClassStack.push(1);
+            body.forEach(member -> member.accept(this, path + "$" + anonymousClassNumber));
+            anonymousClassStack.pop();
+        }
+
+        @Override
+        public void visit(final MethodDeclaration methodDeclaration, String path) {
+            add(path + "." + methodDeclaration.getNameAsString(), methodDeclaration.getNameAsString(), methodDeclaration);
+            super.visit(methodDeclaration, path);
+        }
+
+        @Override
+        public void visit(final ConstructorDeclaration constructorDeclaration, String path) {
+            add(path + ".<init>", constructorDeclaration.getNameAsString(), constructorDeclaration);
+            super.visit(constructorDeclaration, path);
+        }
+    }
+}
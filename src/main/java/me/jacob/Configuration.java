@@ -10,6 +10,36 @@ public class Configuration {
 
     private String outputDirectory;
 
+    private String gitDirectory;
+
+    private int shardIndex;
+
+    private int shardCount = 1;
+
+    private int threads;
+
+    private boolean virtualThreads;
+
+    private boolean packedMethods;
+
+    private ResolutionMode resolutionMode = ResolutionMode.FULL;
+
+    private double resolutionSample;
+
+    private boolean pruneTests;
+
+    private String cacheDirectory;
+
+    private long cacheSize;
+
+    private boolean resume;
+
+    private long memoryBudget;
+
+    private boolean verbose;
+
+    private long progressInterval;
+
     public String getFileName() {
         return Path.of(inputDirectory,fileName).toFile().getPath();
     }
@@ -36,4 +66,139 @@ public class Configuration {
         this.outputDirectory = outputDirectory;
         return this;
     }
+
+    public String getGitDirectory() {
+        return gitDirectory;
+    }
+
+    public Configuration setGitDirectory(String gitDirectory) {
+        this.gitDirectory = gitDirectory;
+        return this;
+    }
+
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    public Configuration setShardIndex(int shardIndex) {
+        this.shardIndex = shardIndex;
+        return this;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public Configuration setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public Configuration setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public Configuration setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    public boolean isPackedMethods() {
+        return packedMethods;
+    }
+
+    public Configuration setPackedMethods(boolean packedMethods) {
+        this.packedMethods = packedMethods;
+        return this;
+    }
+
+    public ResolutionMode getResolutionMode() {
+        return resolutionMode;
+    }
+
+    public Configuration setResolutionMode(ResolutionMode resolutionMode) {
+        this.resolutionMode = resolutionMode;
+        return this;
+    }
+
+    public double getResolutionSample() {
+        return resolutionSample;
+    }
+
+    public Configuration setResolutionSample(double resolutionSample) {
+        this.resolutionSample = resolutionSample;
+        return this;
+    }
+
+    public boolean isPruneTests() {
+        return pruneTests;
+    }
+
+    public Configuration setPruneTests(boolean pruneTests) {
+        this.pruneTests = pruneTests;
+        return this;
+    }
+
+    public String getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    public Configuration setCacheDirectory(String cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+        return this;
+    }
+
+    public long getCacheSize() {
+        return cacheSize;
+    }
+
+    public Configuration setCacheSize(long cacheSize) {
+        this.cacheSize = cacheSize;
+        return this;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public Configuration setResume(boolean resume) {
+        this.resume = resume;
+        return this;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public Configuration setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        return this;
+    }
+
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    public Configuration setVerbose(boolean verbose) {
+        this.verbose = verbose;
+        return this;
+    }
+
+    public long getProgressInterval() {
+        return progressInterval;
+    }
+
+    public Configuration setProgressInterval(long progressInterval) {
+        this.progressInterval = progressInterval;
+        return this;
+    }
 }
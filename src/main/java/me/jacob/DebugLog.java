@@ -0,0 +1,99 @@
+package me.jacob;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in log of per node detail, written to stdout by one background thread. Workers only put lines into
+ * a bounded queue; when it is full the line is dropped and counted instead of making the worker wait.
+ * Callers check {@link #isEnabled()} first so that nothing is formatted when the log is off.
+ */
+public class DebugLog {
+
+    private static final int QUEUE_CAPACITY = 1 << 14;
+
+    // Compared by identity, so it must not be an interned string a caller could log
+    private static final String END = new String("end");
+
+    private static final LongAdder Dropped = new LongAdder();
+
+    private static volatile BlockingQueue<String> queue;
+
+    private static Thread thread;
+
+    public static synchronized void start() {
+        if (queue != null) {
+            return;
+        }
+
+        queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        thread = new Thread(DebugLog::drain, "debug-log");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static boolean isEnabled() {
+        return queue != null;
+    }
+
+    public static void log(String line) {
+        var lines = queue;
+        if (lines != null && !lines.offer(line)) {
+            Dropped.increment();
+        }
+    }
+
+    private static void drain() {
+        var lines = queue;
+        var batch = new ArrayList<String>(256);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        try {
+            while (true) {
+                batch.add(lines.take());
+                lines.drainTo(batch);
+                for (var line : batch) {
+                    if (line == END) {
+                        out.flush();
+                        return;
+                    }
+                    out.write(line);
+                    out.write(System.lineSeparator());
+                }
+                batch.clear();
+                // Only flush once the queue ran dry, a busy run writes in large blocks
+                if (lines.isEmpty()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Writes out what is still queued and stops the log. */
+    public static synchronized void stop() {
+        if (queue == null) {
+            return;
+        }
+
+        try {
+            queue.put(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        queue = null;
+
+        if (Dropped.sum() > 0) {
+            System.out.println("Debug log dropped " + Dropped.sum() + " lines it could not keep up with");
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package me.jacob;
+
+import me.jacob.entities.BugRecordInput;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Class sources extracted by extract.py, the source file column is relative to the working directory.
+ */
+public class FileClassSourceProvider implements ClassSourceProvider {
+
+    private final String inputDirectory;
+
+    private final ClassSourceStore store;
+
+    public FileClassSourceProvider(String inputDirectory, ClassSourceStore store) {
+        this.inputDirectory = inputDirectory;
+        this.store = store;
+    }
+
+    @Override
+    public long size(BugRecordInput input) {
+        return new File(inputDirectory, input.getSourceFile()).length();
+    }
+
+    @Override
+    public Path store(BugRecordInput input) throws IOException {
+        return store.store(input.getProject(), new File(inputDirectory, input.getSourceFile()));
+    }
+}
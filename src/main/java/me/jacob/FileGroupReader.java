@@ -0,0 +1,261 @@
+package me.jacob;
+
+import com.opencsv.CSVWriter;
+import me.jacob.entities.BugRecordInput;
+import me.jacob.entities.FileGroup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Streams the file groups of method-p-source.csv without holding the whole table. The records of a group
+ * must be next to each other, which holds when the file is sorted by {@link FileGroup#keyOf group key}:
+ * a first pass checks that and counts the groups, and a file that is not sorted is sorted on disk first,
+ * in chunks of {@link #CHUNK_RECORDS} records that are merged into one sorted copy.
+ */
+public class FileGroupReader implements Iterator<FileGroup>, AutoCloseable {
+
+    static final int CHUNK_RECORDS = 200_000;
+
+    private final BugRecordReader reader;
+
+    private final Predicate<String> selected;
+
+    private final ClassSourceProvider sources;
+
+    // The sorted copy, deleted on close, or null when the input was sorted already
+    private final File sortedCopy;
+
+    private final Scan scan;
+
+    private BugRecordInput pending;
+
+    private String pendingKey;
+
+    private FileGroup next;
+
+    private FileGroupReader(File file, File sortedCopy, Scan scan, Predicate<String> selected, ClassSourceProvider sources) {
+        this.reader = new BugRecordReader(file);
+        this.sortedCopy = sortedCopy;
+        this.scan = scan;
+        this.selected = selected;
+        this.sources = sources;
+        readPending();
+    }
+
+    /**
+     * @param workDirectory where an unsorted input is sorted
+     * @param selected      keys of the groups to return, the others are skipped
+     * @param sources       sizes of the class sources, for the cost of each group
+     */
+    public static FileGroupReader open(File input, File workDirectory, Predicate<String> selected, ClassSourceProvider sources) {
+        try (var ignored = Metrics.time(Metrics.Stage.CSV_READ)) {
+            var scan = scan(input, selected, sources);
+            if (scan != null) {
+                return new FileGroupReader(input, null, scan, selected, sources);
+            }
+
+            System.out.println(input + " is not sorted by file group, sorting it on disk");
+            var sorted = sort(input, workDirectory);
+            return new FileGroupReader(sorted, sorted, scan(sorted, selected, sources), selected, sources);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Counts the selected groups and their cost, or returns null as soon as a key is out of order
+    private static Scan scan(File file, Predicate<String> selected, ClassSourceProvider sources) {
+        int groups = 0, selectedGroups = 0;
+        long cost = 0;
+        try (var reader = new BugRecordReader(file)) {
+            String key = null;
+            BugRecordInput first = null;
+            int records = 0;
+            BugRecordInput record;
+            while (true) {
+                record = reader.read();
+                var recordKey = record == null ? null : FileGroup.keyOf(record);
+                if (key != null && !key.equals(recordKey)) {
+                    groups++;
+                    if (selected.test(key)) {
+                        selectedGroups++;
+                        cost += FileGroup.cost(sources.size(first), records);
+                    }
+                }
+                if (record == null) {
+                    break;
+                }
+
+                if (key != null && recordKey.compareTo(key) < 0) {
+                    return null;
+                }
+                if (!recordKey.equals(key)) {
+                    key = recordKey;
+                    first = record;
+                    records = 0;
+                }
+                records++;
+            }
+        }
+
+        return new Scan(groups, selectedGroups, cost);
+    }
+
+    private static File sort(File input, File workDirectory) throws IOException {
+        Files.createDirectories(workDirectory.toPath());
+        var chunks = new ArrayList<File>();
+        try {
+            try (var reader = new BugRecordReader(input)) {
+                var chunk = new ArrayList<KeyedRecord>(CHUNK_RECORDS);
+                BugRecordInput record;
+                while ((record = reader.read()) != null) {
+                    chunk.add(new KeyedRecord(FileGroup.keyOf(record), record));
+                    if (chunk.size() == CHUNK_RECORDS) {
+                        chunks.add(writeChunk(chunk, workDirectory));
+                        chunk.clear();
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    chunks.add(writeChunk(chunk, workDirectory));
+                }
+            }
+
+            var sorted = File.createTempFile("sorted-", ".csv", workDirectory);
+            merge(chunks, sorted);
+            return sorted;
+        } finally {
+            for (var chunk : chunks) {
+                Files.deleteIfExists(chunk.toPath());
+            }
+        }
+    }
+
+    // The sort is stable, so records of a group keep their order from the input
+    private static File writeChunk(List<KeyedRecord> chunk, File workDirectory) throws IOException {
+        chunk.sort(Comparator.comparing(KeyedRecord::key));
+        var file = File.createTempFile("chunk-", ".csv", workDirectory);
+        try (var writer = BugRecordReader.createWriter(file)) {
+            for (var keyed : chunk) {
+                BugRecordReader.write(writer, keyed.record());
+            }
+        }
+
+        return file;
+    }
+
+    // Equal keys are taken from the earlier chunk first, which keeps the merge stable too
+    private static void merge(List<File> chunks, File sorted) throws IOException {
+        var readers = new ArrayList<BugRecordReader>(chunks.size());
+        var heads = new PriorityQueue<ChunkHead>(Comparator.comparing(ChunkHead::key).thenComparingInt(ChunkHead::chunk));
+        try (CSVWriter writer = BugRecordReader.createWriter(sorted)) {
+            for (int i = 0; i < chunks.size(); i++) {
+                var reader = new BugRecordReader(chunks.get(i));
+                readers.add(reader);
+                advance(heads, reader, i);
+            }
+
+            while (!heads.isEmpty()) {
+                var head = heads.poll();
+                BugRecordReader.write(writer, head.record());
+                advance(heads, readers.get(head.chunk()), head.chunk());
+            }
+        } finally {
+            readers.forEach(BugRecordReader::close);
+        }
+    }
+
+    private static void advance(PriorityQueue<ChunkHead> heads, BugRecordReader reader, int chunk) {
+        var record = reader.read();
+        if (record != null) {
+            heads.add(new ChunkHead(FileGroup.keyOf(record), chunk, record));
+        }
+    }
+
+    /** Number of groups in the input, selected or not. */
+    public int getGroupCount() {
+        return scan.groups();
+    }
+
+    /** Number of groups this reader returns. */
+    public int getSelectedGroupCount() {
+        return scan.selectedGroups();
+    }
+
+    /** Summed cost of the groups this reader returns. */
+    public long getSelectedCost() {
+        return scan.cost();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try (var ignored = Metrics.time(Metrics.Stage.CSV_READ)) {
+                next = readGroup();
+            }
+        }
+
+        return next != null;
+    }
+
+    @Override
+    public FileGroup next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        var group = next;
+        next = null;
+        return group;
+    }
+
+    private FileGroup readGroup() {
+        while (pending != null) {
+            var key = pendingKey;
+            var records = new ArrayList<BugRecordInput>();
+            while (pending != null && key.equals(pendingKey)) {
+                records.add(pending);
+                readPending();
+            }
+
+            if (selected.test(key)) {
+                return new FileGroup(key, records, sources.size(records.get(0)));
+            }
+        }
+
+        return null;
+    }
+
+    private void readPending() {
+        pending = reader.read();
+        pendingKey = pending == null ? null : FileGroup.keyOf(pending);
+    }
+
+    @Override
+    public void close() {
+        reader.close();
+        if (sortedCopy != null) {
+            try {
+                Files.deleteIfExists(sortedCopy.toPath());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            // The work directory is only removed when nothing else was left in it
+            try {
+                Files.deleteIfExists(sortedCopy.getParentFile().toPath());
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private record Scan(int groups, int selectedGroups, long cost) {
+    }
+
+    private record KeyedRecord(String key, BugRecordInput record) {
+    }
+
+    private record ChunkHead(String key, int chunk, BugRecordInput record) {
+    }
+}
@@ -0,0 +1,32 @@
+package me.jacob;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes every method to its own file, {@code <directory>/methods/<id>.java}.
+ */
+public class FileMethodSourceSink implements MethodSourceSink {
+
+    private final File outputDirectory;
+
+    public FileMethodSourceSink(File outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    @Override
+    public String write(String directory, int id, String source) throws IOException {
+        var methodPath = Path.of(directory, "methods", id + ".java");
+        var file = outputDirectory.toPath().resolve(methodPath);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, source, StandardCharsets.UTF_8);
+        return methodPath.toString();
+    }
+
+    @Override
+    public void close() {
+    }
+}
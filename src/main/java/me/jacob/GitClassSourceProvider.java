@@ -0,0 +1,140 @@
+package me.jacob;
+
+import me.jacob.entities.BugRecordInput;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class sources read from the project repositories at the commit of each record, replacing the checkout
+ * per row in extract.py. Every commit is listed once to find the class files, and blobs are streamed
+ * from one {@code git cat-file} process per repository into the class source store.
+ */
+public class GitClassSourceProvider implements ClassSourceProvider, AutoCloseable {
+
+    private final File repositoriesDirectory;
+
+    private final ClassSourceStore store;
+
+    private final Map<String, GitRepository> repositories;
+
+    private final Map<String, Long> sizes;
+
+    /**
+     * @param repositoriesDirectory directory with one clone per project, named like the project
+     */
+    public GitClassSourceProvider(File repositoriesDirectory, ClassSourceStore store) {
+        this.repositoriesDirectory = repositoriesDirectory;
+        this.store = store;
+        this.repositories = new ConcurrentHashMap<>();
+        this.sizes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Looks up the class file of every record in the tree of its commit and sets it as the source file.
+     * Records whose class is missing or ambiguous are left out, like extract.py does.
+     */
+    public List<BugRecordInput> resolve(List<BugRecordInput> records) {
+        var commits = new LinkedHashMap<String, List<BugRecordInput>>();
+        for (var record : records) {
+            commits.computeIfAbsent(record.getProject() + "#" + record.getHash(), x -> new ArrayList<>()).add(record);
+        }
+
+        var missingProjects = new HashSet<String>();
+        var resolved = new ArrayList<BugRecordInput>(records.size());
+        for (var commit : commits.values()) {
+            var project = commit.get(0).getProject();
+            var hash = commit.get(0).getHash();
+            if (!new File(repositoriesDirectory, project).isDirectory()) {
+                if (missingProjects.add(project)) {
+                    System.out.println("Project directory " + project + " not found, skipping.");
+                }
+                continue;
+            }
+
+            Map<String, List<GitRepository.TreeEntry>> filesByName;
+            try {
+                filesByName = javaFilesByName(repository(project).listFiles(hash));
+            } catch (IOException e) {
+                System.out.println("Failed to list " + hash + " in " + project + ": " + e.getMessage());
+                continue;
+            }
+
+            for (var record : commit) {
+                var entry = findClassFile(filesByName, record.getParent());
+                if (entry == null) {
+                    System.out.println("Java file " + record.getParent() + " not found or ambiguous in " + project + " at " + hash + ", skipping.");
+                    continue;
+                }
+
+                record.setSourceFile(entry.path());
+                sizes.put(key(record), entry.size());
+                resolved.add(record);
+            }
+        }
+
+        return resolved;
+    }
+
+    private static Map<String, List<GitRepository.TreeEntry>> javaFilesByName(List<GitRepository.TreeEntry> entries) {
+        var filesByName = new HashMap<String, List<GitRepository.TreeEntry>>();
+        for (var entry : entries) {
+            if (entry.path().endsWith(".java")) {
+                var name = entry.path().substring(entry.path().lastIndexOf('/') + 1);
+                filesByName.computeIfAbsent(name, x -> new ArrayList<>(1)).add(entry);
+            }
+        }
+
+        return filesByName;
+    }
+
+    // The file of the top level class, which has to be unique in the tree
+    private static GitRepository.TreeEntry findClassFile(Map<String, List<GitRepository.TreeEntry>> filesByName, String parent) {
+        var splindex = parent.indexOf('$');
+        var classPath = (splindex < 0 ? parent : parent.substring(0, splindex)).replace('.', '/') + ".java";
+        var candidates = filesByName.getOrDefault(classPath.substring(classPath.lastIndexOf('/') + 1), List.of());
+
+        GitRepository.TreeEntry found = null;
+        for (var candidate : candidates) {
+            if (candidate.path().equals(classPath) || candidate.path().endsWith("/" + classPath)) {
+                if (found != null) {
+                    return null;
+                }
+                found = candidate;
+            }
+        }
+
+        return found;
+    }
+
+    private GitRepository repository(String project) {
+        return repositories.computeIfAbsent(project, x -> new GitRepository(new File(repositoriesDirectory, project)));
+    }
+
+    private static String key(BugRecordInput input) {
+        return input.getProject() + "#" + input.getHash() + ":" + input.getSourceFile();
+    }
+
+    @Override
+    public long size(BugRecordInput input) {
+        return sizes.getOrDefault(key(input), 0L);
+    }
+
+    @Override
+    public Path store(BugRecordInput input) throws IOException {
+        var content = repository(input.getProject()).readFile(input.getHash(), input.getSourceFile());
+        if (content == null) {
+            throw new IOException(input.getSourceFile() + " is missing at " + input.getHash() + " in " + input.getProject());
+        }
+
+        return store.store(input.getProject(), content);
+    }
+
+    @Override
+    public void close() {
+        repositories.values().forEach(GitRepository::close);
+    }
+}
@@ -0,0 +1,141 @@
+package me.jacob;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads files of any commit straight from the object database of a repository, without checking it out.
+ * Blobs come from one long running {@code git cat-file --batch} process, which is shared by all threads.
+ */
+public class GitRepository implements AutoCloseable {
+
+    private final File directory;
+
+    private Process catFile;
+
+    private OutputStream requests;
+
+    private InputStream responses;
+
+    public GitRepository(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Every file in the tree of {@code revision} with its size, as listed by {@code git ls-tree -r -l}.
+     */
+    public List<TreeEntry> listFiles(String revision) throws IOException {
+        var process = new ProcessBuilder("git", "ls-tree", "-r", "-l", "-z", revision)
+                .directory(directory)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+
+        byte[] output;
+        try (var in = process.getInputStream()) {
+            output = in.readAllBytes();
+        }
+        waitFor(process, "git ls-tree " + revision);
+
+        // Entries look like "<mode> <type> <object> <size>\t<path>\0"
+        var entries = new ArrayList<TreeEntry>();
+        for (var entry : new String(output, StandardCharsets.UTF_8).split("\0")) {
+            int tab = entry.indexOf('\t');
+            if (tab < 0) {
+                continue;
+            }
+
+            var fields = entry.substring(0, tab).trim().split(" +");
+            if (fields.length == 4 && fields[1].equals("blob")) {
+                entries.add(new TreeEntry(entry.substring(tab + 1), Long.parseLong(fields[3])));
+            }
+        }
+
+        return entries;
+    }
+
+    /** The content of {@code path} at {@code revision}, or null if the commit has no such file. */
+    public synchronized byte[] readFile(String revision, String path) throws IOException {
+        if (catFile == null || !catFile.isAlive()) {
+            start();
+        }
+
+        requests.write((revision + ":" + path + "\n").getBytes(StandardCharsets.UTF_8));
+        requests.flush();
+
+        // "<object> <type> <size>\n<content>\n", or "<name> missing\n" where the name may contain spaces
+        var header = readLine();
+        if (header.endsWith(" missing") || header.endsWith(" ambiguous")) {
+            return null;
+        }
+
+        int sizeStart = header.lastIndexOf(' ');
+        int typeStart = header.lastIndexOf(' ', sizeStart - 1);
+        int size;
+        try {
+            size = Integer.parseInt(header.substring(sizeStart + 1));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IOException("Unexpected output from git cat-file in " + directory + ": " + header);
+        }
+
+        var content = responses.readNBytes(size);
+        if (responses.read() != '\n') {
+            throw new IOException("Unexpected output from git cat-file in " + directory);
+        }
+        // A directory has the path too, its tree is read past but not returned
+        return typeStart >= 0 && header.substring(typeStart + 1, sizeStart).equals("blob") ? content : null;
+    }
+
+    private void start() throws IOException {
+        catFile = new ProcessBuilder("git", "cat-file", "--batch")
+                .directory(directory)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        requests = new BufferedOutputStream(catFile.getOutputStream());
+        responses = new BufferedInputStream(catFile.getInputStream(), 1 << 16);
+    }
+
+    private String readLine() throws IOException {
+        var line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = responses.read()) != '\n') {
+            if (b < 0) {
+                throw new IOException("git cat-file ended unexpectedly in " + directory);
+            }
+            line.write(b);
+        }
+
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private void waitFor(Process process, String command) throws IOException {
+        try {
+            if (process.waitFor() != 0) {
+                throw new IOException(command + " failed in " + directory);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (catFile != null) {
+            try {
+                requests.close();
+                catFile.waitFor();
+            } catch (IOException e) {
+                catFile.destroy();
+            } catch (InterruptedException e) {
+                catFile.destroy();
+                Thread.currentThread().interrupt();
+            }
+            catFile = null;
+        }
+    }
+
+    public record TreeEntry(String path, long size) {
+    }
+}
@@ -1,38 +1,60 @@
 package me.jacob;
 
 import me.jacob.entities.SdpEdge;
-import me.jacob.entities.SdpMethod;
+import me.jacob.util.DenseIdMap;
 import me.jacob.util.UnionFind;
 
 import java.util.*;
 
 public class GraphGrouper {
-    public static List<Set<SdpEdge>> groupEdgesIntoGraphs(List<SdpEdge> edges) {
-        // Collect all unique nodes
-        Set<Integer> nodes = new HashSet<>();
-        for (SdpEdge edge : edges) {
-            nodes.add(edge.getSource().getId());
-            nodes.add(edge.getDestination().getId());
+
+    /**
+     * Splits the edges into connected components. The edges of a file are already distinct, so every
+     * component keeps its edges in their original order without deduplication.
+     */
+    public static List<List<SdpEdge>> groupEdgesIntoGraphs(List<SdpEdge> edges) {
+        int edgeCount = edges.size();
+
+        // Remap the sparse global node ids to 0..n-1 so the union-find can live in arrays,
+        // the endpoints are packed as source and destination of each edge next to each other
+        var nodeIds = new DenseIdMap(edgeCount);
+        int[] endpoints = new int[edgeCount * 2];
+        for (int i = 0; i < edgeCount; i++) {
+            var edge = edges.get(i);
+            endpoints[i * 2] = nodeIds.getOrAssign(edge.getSource().getId());
+            endpoints[i * 2 + 1] = nodeIds.getOrAssign(edge.getDestination().getId());
         }
 
-        // Initialize Union-Find structure
-        UnionFind uf = new UnionFind(nodes);
+        int nodeCount = nodeIds.size();
+        UnionFind uf = new UnionFind(nodeCount);
+        for (int i = 0; i < edgeCount; i++) {
+            uf.union(endpoints[i * 2], endpoints[i * 2 + 1]);
+        }
+
+        // Number the components in order of their first edge and count their edges
+        int[] componentOfRoot = new int[nodeCount];
+        Arrays.fill(componentOfRoot, -1);
+        int[] edgeComponent = new int[edgeCount];
+        int[] componentSizes = new int[nodeCount];
+        int componentCount = 0;
+        for (int i = 0; i < edgeCount; i++) {
+            int root = uf.find(endpoints[i * 2]);
+            if (componentOfRoot[root] < 0) {
+                componentOfRoot[root] = componentCount++;
+            }
+            edgeComponent[i] = componentOfRoot[root];
+            componentSizes[edgeComponent[i]]++;
+        }
 
-        // Union connected nodes
-        for (SdpEdge edge : edges) {
-            uf.union(edge.getSource().getId(), edge.getDestination().getId());
+        List<List<SdpEdge>> components = new ArrayList<>(componentCount);
+        for (int component = 0; component < componentCount; component++) {
+            components.add(new ArrayList<>(componentSizes[component]));
         }
 
-        // Group edges by connected component (root parent)
-        Map<Integer, Set<SdpEdge>> componentToEdges = new HashMap<>();
-        for (SdpEdge edge : edges) {
-            int componentId = uf.find(edge.getSource().getId());
-            componentToEdges
-                    .computeIfAbsent(componentId, k -> new HashSet<>())
-                    .add(edge);
+        for (int i = 0; i < edgeCount; i++) {
+            components.get(edgeComponent[i]).add(edges.get(i));
         }
 
-        // Return the grouped edges
-        return new ArrayList<>(componentToEdges.values());
+        return components;
     }
-}
\ No newline at end of file
+}
@@ -2,17 +2,57 @@ package me.jacob;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Hands out node and graph ids. A sharded run only uses the ids {@code shard, shard + count, shard + 2 * count, ...},
+ * so the outputs of all shards can be put together without renumbering.
+ */
 public class IdGenerator {
 
     private static AtomicInteger NodeId = new AtomicInteger(0);
 
     private static AtomicInteger GraphId = new AtomicInteger(0);
 
+    private static volatile int Offset = 0;
+
+    private static volatile int Stride = 1;
+
     public static int getNodeId() {
-        return NodeId.getAndIncrement();
+        return toId(NodeId.getAndIncrement(), "node");
     }
 
     public static int getGraphId() {
-        return GraphId.getAndIncrement();
+        return toId(GraphId.getAndIncrement(), "graph");
+    }
+
+    // The n-th id of this shard, with N shards only about 2^31 / N of them fit into an int
+    private static int toId(int n, String kind) {
+        // A counter past Integer.MAX_VALUE wraps to negative numbers
+        if (n >= 0) {
+            try {
+                return Math.addExact(Offset, Math.multiplyExact(n, Stride));
+            } catch (ArithmeticException ignored) {
+            }
+        }
+
+        throw new IllegalStateException(Stride > 1
+                ? "Ran out of " + kind + " ids in shard " + Offset + "/" + Stride + ", run with fewer shards"
+                : "Ran out of " + kind + " ids");
+    }
+
+    // Must be called before the first id is handed out
+    public static void shard(int shard, int count) {
+        Offset = shard;
+        Stride = count;
+    }
+
+    // Continues numbering after ids that an earlier run already wrote out
+    public static void advancePast(int nodeId, int graphId) {
+        NodeId.accumulateAndGet(countUpTo(nodeId), Math::max);
+        GraphId.accumulateAndGet(countUpTo(graphId), Math::max);
+    }
+
+    // How many ids of this shard are at most id
+    private static int countUpTo(int id) {
+        return Math.max(0, Math.floorDiv(id - Offset, Stride) + 1);
     }
 }
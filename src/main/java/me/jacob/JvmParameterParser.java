@@ -4,9 +4,36 @@ import me.jacob.entities.JvmParameterType;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JvmParameterParser {
 
+    // Descriptors repeat heavily across files, so parsed ones are kept for the whole run
+    private static final int MAX_CACHED = 200_000;
+
+    private static final Map<String, List<JvmParameterType>> PARAMETER_CACHE = new ConcurrentHashMap<>();
+
+    private static final Map<String, JvmParameterType> TYPE_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Same as {@link #parseParameters(String)}, but returns a shared immutable list whose types are
+     * shared between all descriptors that mention them.
+     */
+    public static List<JvmParameterType> parseCached(String paramSection) {
+        var cached = PARAMETER_CACHE.get(paramSection);
+        if (cached != null) {
+            return cached;
+        }
+
+        var parsed = List.copyOf(new JvmParameterParser().parseParameters(paramSection));
+        if (PARAMETER_CACHE.size() < MAX_CACHED) {
+            PARAMETER_CACHE.putIfAbsent(paramSection, parsed);
+        }
+
+        return parsed;
+    }
+
     public List<JvmParameterType> parseParameters(String paramSection) {
         List<String> jvmParams = new ArrayList<>();
         StringBuilder currentType = new StringBuilder();
@@ -48,12 +75,26 @@ public class JvmParameterParser {
 
         List<JvmParameterType> result = new ArrayList<>();
         for (var param : jvmParams) {
-            result.add(parseType(param));
+            result.add(internType(param));
         }
 
         return result;
     }
 
+    private JvmParameterType internType(String param) {
+        var type = TYPE_CACHE.get(param);
+        if (type != null) {
+            return type;
+        }
+
+        type = parseType(param);
+        if (TYPE_CACHE.size() < MAX_CACHED) {
+            TYPE_CACHE.putIfAbsent(param, type);
+        }
+
+        return type;
+    }
+
     public JvmParameterType parseType(String param) {
         switch (param) {
             case "I":
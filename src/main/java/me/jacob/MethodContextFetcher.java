@@ -1,6 +1,5 @@
 package me.jacob;
 
-import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.*;
 import com.github.javaparser.ast.expr.*;
 import com.github.javaparser.ast.stmt.ExplicitConstructorInvocationStmt;
@@ -9,26 +8,54 @@ import me.jacob.entities.SdpEdge;
 import me.jacob.entities.SdpMethod;
 
 import java.util.*;
+import java.util.function.IntSupplier;
 import java.util.stream.Collectors;
 
+/**
+ * Expands the input methods of a compilation unit into the call graph around them, one level of calls at a time.
+ * Large levels are visited on the fork-join pool. Their results are merged in order, so node ids do not
+ * depend on thread timing.
+ */
 public class MethodContextFetcher {
 
+    // Levels smaller than this are visited on the calling thread
+    private static final int PARALLEL_THRESHOLD = 32;
+
     private final List<SdpEdge> edges;
     private List<SdpMethod> inputMethods;
     private final Map<BodyDeclaration<?>, SdpMethod> nodes;
     private final Set<BodyDeclaration<?>> processed;
+    private final Set<BodyDeclaration<?>> excluded;
     private final SdpMethod firstMethod;
-    private Map<String, List<BodyDeclaration<?>>> classDeclarations;
-    private final CompilationUnit cu;
+    private final CompilationUnitIndex index;
+    // Connections of every call site resolved so far in this unit, including the ones that found nothing
+    private final Map<Expression, List<BodyDeclaration<?>>> callSites;
+    // The symbol solver keeps its caches in the unsynchronized data of the nodes, so it only runs on one thread at a time
+    private final Object resolveLock;
+    private final ResolutionMode resolutionMode;
+    private final NodeFilter nodeFilter;
+    private final IntSupplier nodeIds;
+
+    public MethodContextFetcher(List<SdpMethod> inputMethods, CompilationUnitIndex index) {
+        this(inputMethods, index, ResolutionMode.FULL, NodeFilter.EXCLUDE_TESTS, IdGenerator::getNodeId);
+    }
 
-    public MethodContextFetcher(List<SdpMethod> inputMethods, CompilationUnit cu) {
-        this.cu = cu;
+    public MethodContextFetcher(List<SdpMethod> inputMethods, CompilationUnitIndex index, ResolutionMode resolutionMode,
+                                NodeFilter nodeFilter, IntSupplier nodeIds) {
+        this.index = index;
+        this.resolutionMode = resolutionMode;
+        this.nodeFilter = nodeFilter;
+        this.nodeIds = nodeIds;
         this.edges = new ArrayList<>();
         this.inputMethods = inputMethods;
-        this.nodes = inputMethods.stream().collect(Collectors.toMap(SdpMethod::getSource, x -> x, this::merge));
+        this.nodes = inputMethods.stream()
+                .filter(method -> nodeFilter.includes(method.getSignature()))
+                .collect(Collectors.toMap(SdpMethod::getSource, x -> x, this::merge));
         this.processed = new HashSet<>();
+        this.excluded = new HashSet<>();
         this.firstMethod = inputMethods.stream().findFirst().get();
-        this.classDeclarations = new HashMap<>();
+        this.callSites = Collections.synchronizedMap(new IdentityHashMap<>());
+        this.resolveLock = new Object();
     }
 
     private SdpMethod merge(SdpMethod a, SdpMethod b) {
@@ -45,50 +72,85 @@ public class MethodContextFetcher {
     }
 
     public void calculate() {
-        for (var method : cu.findAll(MethodDeclaration.class)) {
-            var list = classDeclarations.computeIfAbsent(method.getNameAsString(), x -> new ArrayList<>());
-            list.add(method);
-        }
+        List<BodyDeclaration<?>> level = new ArrayList<>();
+        for (var method : inputMethods) {
+            if (!nodes.containsKey(method.getSource())) {
+                excluded.add(method.getSource());
+                if (nodeFilter.isPrune()) {
+                    continue;
+                }
+            }
 
-        for (var constructor : cu.findAll(ConstructorDeclaration.class)) {
-            var list = classDeclarations.computeIfAbsent(constructor.getNameAsString(), x -> new ArrayList<>());
-            list.add(constructor);
+            if (processed.add(method.getSource())) {
+                level.add(method.getSource());
+            }
         }
 
-        for (var method : inputMethods) {
-            dfs(method);
+        while (!level.isEmpty()) {
+            var stream = level.size() < PARALLEL_THRESHOLD ? level.stream() : level.parallelStream();
+            var visitors = stream.map(this::visit).toList();
+            level = expand(level, visitors);
         }
     }
 
-    private void dfs(SdpMethod method) {
-        if (processed.contains(method.getSource())) {
-            return;
-        }
+    private MethodDeclarationVisitor visit(BodyDeclaration<?> declaration) {
+        var visitor = new MethodDeclarationVisitor(index.getDeclarationsByName(), callSites, resolveLock, resolutionMode);
+        declaration.accept(visitor, null);
+        return visitor;
+    }
 
-        processed.add(method.getSource());
+    // Adds the calls found in one level and returns the declarations they reach for the first time
+    private List<BodyDeclaration<?>> expand(List<BodyDeclaration<?>> level, List<MethodDeclarationVisitor> visitors) {
+        var next = new ArrayList<BodyDeclaration<?>>();
+        for (int i = 0; i < level.size(); i++) {
+            // Null for excluded declarations, which are only expanded through
+            var method = nodes.get(level.get(i));
+            var visitor = visitors.get(i);
+            if (visitor.isExplicitSuper) {
+                if (method != null) {
+                    method.setValid(false);
+                }
+                continue;
+            }
 
-        var visitor = new MethodDeclarationVisitor(classDeclarations);
-        method.getSource().accept(visitor, null);
-        if (visitor.isExplicitSuper) {
-            method.setValid(false);
-            return;
-        }
+            for (var connection : visitor.connected) {
+                var connectionNode = getOrCreateNode(connection);
+                if (connectionNode == null && nodeFilter.isPrune()) {
+                    continue;
+                }
 
-        for (var connection : visitor.connected) {
-            var connectionNode = nodes.get(connection);
-            if (connectionNode == null) {
-                connectionNode = createBuggedMethod(connection);
+                if (method != null && connectionNode != null) {
+                    edges.add(new SdpEdge(method, connectionNode));
+                }
+                if (processed.add(connection)) {
+                    next.add(connection);
+                }
             }
+        }
 
-            nodes.put(connectionNode.getSource(), connectionNode);
-            edges.add(new SdpEdge(method, connectionNode));
-            dfs(connectionNode);
+        return next;
+    }
+
+    // Returns null for declarations the filter excludes
+    private SdpMethod getOrCreateNode(BodyDeclaration<?> declaration) {
+        var node = nodes.get(declaration);
+        if (node != null || excluded.contains(declaration)) {
+            return node;
         }
+
+        if (!nodeFilter.includes(calcSignature(declaration))) {
+            excluded.add(declaration);
+            return null;
+        }
+
+        node = createBuggedMethod(declaration);
+        nodes.put(declaration, node);
+        return node;
     }
 
     private SdpMethod createBuggedMethod(BodyDeclaration<?> connection) {
         var connectionNode = new SdpMethod();
-        connectionNode.setId(IdGenerator.getNodeId());
+        connectionNode.setId(nodeIds.getAsInt());
         connectionNode.setProject(firstMethod.getProject());
         connectionNode.setSource(connection);
         connectionNode.setHash(firstMethod.getHash());
@@ -123,28 +185,75 @@ public class MethodContextFetcher {
         private final Set<BodyDeclaration<?>> connected = new HashSet<>();
         private boolean isExplicitSuper = false;
         private final Map<String, List<BodyDeclaration<?>>> classDecs;
+        private final Map<Expression, List<BodyDeclaration<?>>> callSites;
+        private final Object resolveLock;
+        private final ResolutionMode resolutionMode;
 
-        private MethodDeclarationVisitor(Map<String, List<BodyDeclaration<?>>> classDecs) {
+        private MethodDeclarationVisitor(Map<String, List<BodyDeclaration<?>>> classDecs, Map<Expression, List<BodyDeclaration<?>>> callSites,
+                                         Object resolveLock, ResolutionMode resolutionMode) {
             this.classDecs = classDecs;
+            this.callSites = callSites;
+            this.resolveLock = resolveLock;
+            this.resolutionMode = resolutionMode;
         }
 
 
         @Override
         public void visit(final MethodCallExpr methodCall, final Void arg) {
+            var targets = callSites.get(methodCall);
+            if (targets == null) {
+                targets = resolveCall(methodCall);
+                callSites.put(methodCall, targets);
+            } else {
+                CallResolutionCounters.cached();
+            }
+            connected.addAll(targets);
+
+            super.visit(methodCall, arg);
+        }
+
+        private List<BodyDeclaration<?>> resolveCall(MethodCallExpr methodCall) {
+            if (resolutionMode != ResolutionMode.FULL) {
+                // Only declarations of this unit become edges, so without an applicable one of that name there is nothing to connect
+                var candidates = classDecs.get(methodCall.getNameAsString());
+                candidates = candidates == null ? List.of() : OverloadFilter.filter(candidates, methodCall.getArguments());
+                if (candidates.isEmpty()) {
+                    CallResolutionCounters.syntactic();
+                    return List.of();
+                }
+
+                // A lone candidate is also what the solver or its fallback would give for a same class call
+                var isSameClass = isSameClassScope(methodCall);
+                if (resolutionMode == ResolutionMode.SYNTACTIC || (isSameClass && candidates.size() == 1)) {
+                    CallResolutionCounters.syntactic();
+                    return isSameClass ? candidates : List.of();
+                }
+            }
+
             try {
-                var resolved = methodCall.resolve();
-                connected.add((MethodDeclaration) resolved.toAst().get());
+                BodyDeclaration<?> target;
+                synchronized (resolveLock) {
+                    target = (MethodDeclaration) methodCall.resolve().toAst().get();
+                }
+                CallResolutionCounters.resolved();
+                return List.of(target);
             } catch (Exception ex) {
                 //unfortunately we cant resolve it because of javaparser being overly strict, lets instead look for the same method name
                 if (isSameClassScope(methodCall)) {
                     var name = methodCall.getNameAsString();
                     if (classDecs.containsKey(name)) {
-                        connected.addAll(classDecs.get(name));
+                        // Leave out the overloads the arguments rule out, they would only be false edges
+                        var candidates = OverloadFilter.filter(classDecs.get(name), methodCall.getArguments());
+                        if (!candidates.isEmpty()) {
+                            CallResolutionCounters.fallback();
+                            return candidates;
+                        }
                     }
                 }
             }
 
-            super.visit(methodCall, arg);
+            CallResolutionCounters.missed();
+            return List.of();
         }
 
         private boolean isSameClassScope(MethodCallExpr methodCall) {
@@ -166,21 +275,55 @@ public class MethodContextFetcher {
 
         @Override
         public void visit(final MethodReferenceExpr methodReferenceExpr, final Void arg) {
-            try {
-                var resolved = methodReferenceExpr.resolve();
-                connected.add((MethodDeclaration) resolved.toAst().get());
-            } catch (Exception ignored) {
-
+            var targets = callSites.get(methodReferenceExpr);
+            if (targets == null) {
+                targets = resolveReference(methodReferenceExpr);
+                callSites.put(methodReferenceExpr, targets);
+            } else {
+                CallResolutionCounters.cached();
             }
+            connected.addAll(targets);
 
             super.visit(methodReferenceExpr, arg);
         }
 
+        private List<BodyDeclaration<?>> resolveReference(MethodReferenceExpr methodReferenceExpr) {
+            if (resolutionMode != ResolutionMode.FULL) {
+                var candidates = classDecs.get(methodReferenceExpr.getIdentifier());
+                if (candidates == null) {
+                    CallResolutionCounters.syntactic();
+                    return List.of();
+                }
+
+                if (resolutionMode == ResolutionMode.SYNTACTIC) {
+                    CallResolutionCounters.syntactic();
+                    var scope = methodReferenceExpr.getScope();
+                    if (!scope.isThisExpr() && !scope.isTypeExpr()) {
+                        return List.of();
+                    }
+
+                    return candidates.stream().filter(BodyDeclaration::isMethodDeclaration).toList();
+                }
+            }
+
+            try {
+                BodyDeclaration<?> target;
+                synchronized (resolveLock) {
+                    target = (MethodDeclaration) methodReferenceExpr.resolve().toAst().get();
+                }
+                CallResolutionCounters.resolved();
+                return List.of(target);
+            } catch (Exception ignored) {
+                CallResolutionCounters.missed();
+                return List.of();
+            }
+        }
+
         @Override
         public void visit(final ObjectCreationExpr constructorCall, final Void arg) {
             var name = constructorCall.getType().getNameAsString();
             if (classDecs.containsKey(name)) {
-                connected.addAll(classDecs.get(name));
+                connected.addAll(OverloadFilter.filter(classDecs.get(name), constructorCall.getArguments()));
             }
         }
 
@@ -192,7 +335,7 @@ public class MethodContextFetcher {
                 if (thisClass.isPresent()) {
                     var name = thisClass.get().getNameAsString();
                     if (classDecs.containsKey(name)) {
-                        connected.addAll(classDecs.get(name));
+                        connected.addAll(OverloadFilter.filter(classDecs.get(name), constructorCall.getArguments()));
                     }
                 }
             } else {
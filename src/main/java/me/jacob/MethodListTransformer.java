@@ -4,10 +4,8 @@ import com.github.javaparser.ast.CompilationUnit;
 import me.jacob.entities.SdpEdge;
 import me.jacob.entities.SdpMethod;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.function.IntSupplier;
 
 public class MethodListTransformer {
 
@@ -15,53 +13,63 @@ public class MethodListTransformer {
 
     private List<SdpEdge> edges = new ArrayList<>();
 
-    private final CompilationUnit compilationUnit;
+    private final CompilationUnitIndex index;
 
-    public MethodListTransformer(List<SdpMethod> methods, CompilationUnit compilationUnit) {
+    private final ResolutionMode resolutionMode;
+
+    private final NodeFilter nodeFilter;
+
+    private final IntSupplier nodeIds;
+
+    private final IntSupplier graphIds;
+
+    public MethodListTransformer(List<SdpMethod> methods, CompilationUnitIndex index) {
+        this(methods, index, ResolutionMode.FULL, NodeFilter.EXCLUDE_TESTS, IdGenerator::getNodeId, IdGenerator::getGraphId);
+    }
+
+    /**
+     * @param nodeIds  ids for the methods found through calls
+     * @param graphIds ids for the call graphs, a run that is not written out can pass its own counters
+     */
+    public MethodListTransformer(List<SdpMethod> methods, CompilationUnitIndex index, ResolutionMode resolutionMode,
+                                 NodeFilter nodeFilter, IntSupplier nodeIds, IntSupplier graphIds) {
         this.methods = methods;
-        this.compilationUnit = compilationUnit;
+        this.index = index;
+        this.resolutionMode = resolutionMode;
+        this.nodeFilter = nodeFilter;
+        this.nodeIds = nodeIds;
+        this.graphIds = graphIds;
         this.edges = new ArrayList<>();
     }
 
-    public void transform(CompilationUnit cu) {
-        if (!methods.isEmpty()) {
-            var methodContextFetcher = new MethodContextFetcher(methods, cu);
-            methodContextFetcher.calculate();
-
-            List<SdpMethod> finalNodes = new ArrayList<>();
-            List<SdpEdge> finalEdges = new ArrayList<>();
-            Set<Integer> invalid = new HashSet<>();
-            for (var node : methodContextFetcher.getNodes().values()) {
-                if (node.getSignature().contains("test")) {
-                    node.setValid(false);
-                    invalid.add(node.getId());
-                } else {
-                    finalNodes.add(node);
-                }
-            }
-
-            for (var edge : methodContextFetcher.getEdges()) {
-                if (invalid.contains(edge.getSource().getId()) || invalid.contains(edge.getDestination().getId())) {
-                    continue;
-                }
+    public void transform() {
+        transform(true);
+    }
 
-                finalEdges.add(edge);
+    /**
+     * @param timeStages false for runs whose time is recorded as a whole elsewhere, like the comparison
+     *                   runs of a resolution sample
+     */
+    public void transform(boolean timeStages) {
+        if (!methods.isEmpty()) {
+            var methodContextFetcher = new MethodContextFetcher(methods, index, resolutionMode, nodeFilter, nodeIds);
+            try (var ignored = time(Metrics.Stage.CONTEXT_FETCH, timeStages)) {
+                methodContextFetcher.calculate();
             }
 
-            for (Set<SdpEdge> graphEdges : GraphGrouper.groupEdgesIntoGraphs(finalEdges)) {
-                var graphId = IdGenerator.getGraphId();
-                Set<SdpMethod> graphNodes = new HashSet<>();
-                for (SdpEdge edge : graphEdges) {
-                    graphNodes.add(finalNodes.stream().filter(x -> x.getId() == edge.getSource().getId()).findFirst().get());
-                    graphNodes.add(finalNodes.stream().filter(x -> x.getId() == edge.getDestination().getId()).findFirst().get());
-                }
-
-                for (var node : graphNodes) {
-                    node.setGraphId(graphId);
-                }
-
-                for (var edge : graphEdges) {
-                    edge.setGraphId(graphId);
+            // Excluded methods never become nodes, so there is nothing left to filter
+            List<SdpMethod> finalNodes = new ArrayList<>(methodContextFetcher.getNodes().values());
+            List<SdpEdge> finalEdges = methodContextFetcher.getEdges();
+
+            // Edges point at the emitted nodes themselves, merged duplicates included
+            try (var ignored = time(Metrics.Stage.GRAPH_GROUPING, timeStages)) {
+                for (List<SdpEdge> graphEdges : GraphGrouper.groupEdgesIntoGraphs(finalEdges)) {
+                    var graphId = graphIds.getAsInt();
+                    for (var edge : graphEdges) {
+                        edge.setGraphId(graphId);
+                        edge.getSource().setGraphId(graphId);
+                        edge.getDestination().setGraphId(graphId);
+                    }
                 }
             }
 
@@ -70,6 +78,11 @@ public class MethodListTransformer {
         }
     }
 
+    // A null resource is skipped by try-with-resources
+    private static Metrics.Timer time(Metrics.Stage stage, boolean timed) {
+        return timed ? Metrics.time(stage) : null;
+    }
+
     public List<SdpMethod> getMethods() {
         return methods;
     }
@@ -79,6 +92,6 @@ public class MethodListTransformer {
     }
 
     public CompilationUnit getCompilationUnit() {
-        return compilationUnit;
+        return index.getCompilationUnit();
     }
 }
@@ -0,0 +1,18 @@
+package me.jacob;
+
+import java.io.IOException;
+
+/**
+ * Destination for the source of every emitted method.
+ */
+public interface MethodSourceSink extends AutoCloseable {
+
+    /**
+     * Writes the source of method {@code id} below {@code directory}, relative to the output directory,
+     * and returns the reference that goes into the method-source-file column.
+     */
+    String write(String directory, int id, String source) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
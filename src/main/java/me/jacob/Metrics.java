@@ -0,0 +1,274 @@
+package me.jacob;
+
+import me.jacob.entities.EdgeOutput;
+import me.jacob.util.Histogram;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Run wide instrumentation: wall and CPU time per stage, counters of things that went wrong, and the
+ * size of the call graphs. Written to {@code metrics.json} and, in the Prometheus text format, to
+ * {@code metrics.prom} in the output directory when a run finishes, so that runs can be compared.
+ * <p>
+ * Stage times are summed over all threads, so with several workers they add up to more than the run.
+ */
+public class Metrics {
+
+    private static final String PREFIX = "method_extractor_";
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported();
+
+    public enum Stage {
+        CSV_READ, SOURCE_COPY, PARSE, NAME_MATCH, CONTEXT_FETCH, GRAPH_GROUPING, OUTPUT_WRITE,
+        // The full resolution runs of --resolution-sample, kept apart so sampling does not skew the stages above
+        RESOLUTION_SAMPLE;
+
+        private final LongAdder calls = new LongAdder();
+
+        private final LongAdder wallNanos = new LongAdder();
+
+        private final LongAdder cpuNanos = new LongAdder();
+
+        private String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    // Long names of the input without a declaration in their class
+    private static final LongAdder UnmatchedLongNames = new LongAdder();
+
+    // Class sources JavaParser could not parse, their file groups produce nothing
+    private static final LongAdder ParseFailures = new LongAdder();
+
+    private static final LongAdder Groups = new LongAdder();
+
+    private static final LongAdder Nodes = new LongAdder();
+
+    private static final LongAdder Edges = new LongAdder();
+
+    private static final Histogram NodesPerGraph = new Histogram(16);
+
+    private static final Histogram EdgesPerGraph = new Histogram(16);
+
+    /** Starts timing {@code stage} on the current thread, the time is added when the timer is closed. */
+    public static Timer time(Stage stage) {
+        return new Timer(stage, System.nanoTime(), cpuTime());
+    }
+
+    private static long cpuTime() {
+        return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    public static void unmatchedLongName() {
+        UnmatchedLongNames.increment();
+    }
+
+    public static void parseFailure() {
+        ParseFailures.increment();
+    }
+
+    /** Counts a file group as written, with the size of each of its call graphs. */
+    public static void written(int nodes, Collection<EdgeOutput> edges) {
+        Groups.increment();
+        Nodes.add(nodes);
+        Edges.add(edges.size());
+
+        var graphs = new HashMap<Integer, Set<Integer>>();
+        var graphEdges = new HashMap<Integer, Integer>();
+        for (var edge : edges) {
+            var graphNodes = graphs.computeIfAbsent(edge.getGraphId(), x -> new HashSet<>());
+            graphNodes.add(edge.getSource());
+            graphNodes.add(edge.getDestination());
+            graphEdges.merge(edge.getGraphId(), 1, Integer::sum);
+        }
+
+        for (var graph : graphs.entrySet()) {
+            NodesPerGraph.record(graph.getValue().size());
+            EdgesPerGraph.record(graphEdges.get(graph.getKey()));
+        }
+    }
+
+    /**
+     * Writes metrics.json and metrics.prom into {@code directory}.
+     *
+     * @param run          training or prediction
+     * @param elapsedNanos wall time of the whole run
+     */
+    public static void write(File directory, String run, long elapsedNanos) {
+        try (var json = new FileWriter(new File(directory, "metrics.json"));
+             var prom = new FileWriter(new File(directory, "metrics.prom"))) {
+            json.write(toJson(run, elapsedNanos));
+            prom.write(toPrometheus(run, elapsedNanos));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Map<String, Long> counters() {
+        var counters = new LinkedHashMap<String, Long>();
+        counters.put("groups", Groups.sum());
+        counters.put("nodes", Nodes.sum());
+        counters.put("edges", Edges.sum());
+        counters.put("unmatched_long_names", UnmatchedLongNames.sum());
+        counters.put("parse_failures", ParseFailures.sum());
+        return counters;
+    }
+
+    private static Map<String, Long> callSites() {
+        var callSites = new LinkedHashMap<String, Long>();
+        callSites.put("resolved", CallResolutionCounters.getResolved());
+        callSites.put("fallback", CallResolutionCounters.getFallback());
+        callSites.put("missed", CallResolutionCounters.getMissed());
+        callSites.put("syntactic", CallResolutionCounters.getSyntactic());
+        callSites.put("cached", CallResolutionCounters.getCached());
+        return callSites;
+    }
+
+    private static String toJson(String run, long elapsedNanos) {
+        var json = new StringBuilder();
+        json.append("{\n  \"run\": \"").append(run).append("\",\n");
+        json.append("  \"elapsed_seconds\": ").append(seconds(elapsedNanos)).append(",\n");
+
+        json.append("  \"stages\": {");
+        var stages = Stage.values();
+        for (int i = 0; i < stages.length; i++) {
+            var stage = stages[i];
+            json.append(i == 0 ? "\n" : ",\n").append("    \"").append(stage.label()).append("\": {\"calls\": ").append(stage.calls.sum())
+                    .append(", \"wall_seconds\": ").append(seconds(stage.wallNanos.sum()))
+                    .append(", \"cpu_seconds\": ").append(seconds(stage.cpuNanos.sum())).append('}');
+        }
+        json.append("\n  },\n");
+
+        for (var counter : counters().entrySet()) {
+            json.append("  \"").append(counter.getKey()).append("\": ").append(counter.getValue()).append(",\n");
+        }
+
+        json.append("  \"call_sites\": {");
+        var first = true;
+        for (var callSite : callSites().entrySet()) {
+            json.append(first ? "" : ", ").append('"').append(callSite.getKey()).append("\": ").append(callSite.getValue());
+            first = false;
+        }
+        json.append("},\n");
+
+        json.append("  \"nodes_per_graph\": ").append(histogramJson(NodesPerGraph)).append(",\n");
+        json.append("  \"edges_per_graph\": ").append(histogramJson(EdgesPerGraph)).append('\n');
+        json.append("}\n");
+        return json.toString();
+    }
+
+    // Bucket counts are per bucket here, not cumulative as in Prometheus
+    private static String histogramJson(Histogram histogram) {
+        var json = new StringBuilder("{\"count\": ").append(histogram.getCount()).append(", \"sum\": ").append(histogram.getSum())
+                .append(", \"buckets\": {");
+        for (int i = 0; i <= histogram.getBuckets(); i++) {
+            var bound = i < histogram.getBuckets() ? String.valueOf(histogram.getUpperBound(i)) : "+Inf";
+            json.append(i == 0 ? "" : ", ").append('"').append(bound).append("\": ").append(histogram.getCount(i));
+        }
+
+        return json.append("}}").toString();
+    }
+
+    private static String toPrometheus(String run, long elapsedNanos) {
+        var prom = new StringBuilder();
+        var runLabel = "run=\"" + run + "\"";
+        gauge(prom, "elapsed_seconds", "Wall time of the run", "{" + runLabel + "}", seconds(elapsedNanos));
+
+        prom.append("# HELP ").append(PREFIX).append("stage_calls_total Times a stage ran\n");
+        prom.append("# TYPE ").append(PREFIX).append("stage_calls_total counter\n");
+        for (var stage : Stage.values()) {
+            sample(prom, "stage_calls_total", stageLabels(runLabel, stage), String.valueOf(stage.calls.sum()));
+        }
+
+        prom.append("# HELP ").append(PREFIX).append("stage_wall_seconds_total Wall time per stage, summed over threads\n");
+        prom.append("# TYPE ").append(PREFIX).append("stage_wall_seconds_total counter\n");
+        for (var stage : Stage.values()) {
+            sample(prom, "stage_wall_seconds_total", stageLabels(runLabel, stage), seconds(stage.wallNanos.sum()));
+        }
+
+        prom.append("# HELP ").append(PREFIX).append("stage_cpu_seconds_total CPU time per stage, summed over threads\n");
+        prom.append("# TYPE ").append(PREFIX).append("stage_cpu_seconds_total counter\n");
+        for (var stage : Stage.values()) {
+            sample(prom, "stage_cpu_seconds_total", stageLabels(runLabel, stage), seconds(stage.cpuNanos.sum()));
+        }
+
+        for (var counter : counters().entrySet()) {
+            counter(prom, counter.getKey() + "_total", "{" + runLabel + "}", counter.getValue());
+        }
+
+        prom.append("# TYPE ").append(PREFIX).append("call_sites_total counter\n");
+        for (var callSite : callSites().entrySet()) {
+            sample(prom, "call_sites_total", "{" + runLabel + ",outcome=\"" + callSite.getKey() + "\"}", String.valueOf(callSite.getValue()));
+        }
+
+        histogram(prom, "graph_nodes", runLabel, NodesPerGraph);
+        histogram(prom, "graph_edges", runLabel, EdgesPerGraph);
+        return prom.toString();
+    }
+
+    private static String stageLabels(String runLabel, Stage stage) {
+        return "{" + runLabel + ",stage=\"" + stage.label() + "\"}";
+    }
+
+    private static void gauge(StringBuilder prom, String name, String help, String labels, String value) {
+        prom.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        prom.append("# TYPE ").append(PREFIX).append(name).append(" gauge\n");
+        sample(prom, name, labels, value);
+    }
+
+    private static void counter(StringBuilder prom, String name, String labels, long value) {
+        prom.append("# TYPE ").append(PREFIX).append(name).append(" counter\n");
+        sample(prom, name, labels, String.valueOf(value));
+    }
+
+    private static void histogram(StringBuilder prom, String name, String runLabel, Histogram histogram) {
+        prom.append("# TYPE ").append(PREFIX).append(name).append(" histogram\n");
+        long cumulative = 0;
+        for (int i = 0; i <= histogram.getBuckets(); i++) {
+            cumulative += histogram.getCount(i);
+            var bound = i < histogram.getBuckets() ? String.valueOf(histogram.getUpperBound(i)) : "+Inf";
+            sample(prom, name + "_bucket", "{" + runLabel + ",le=\"" + bound + "\"}", String.valueOf(cumulative));
+        }
+        sample(prom, name + "_sum", "{" + runLabel + "}", String.valueOf(histogram.getSum()));
+        sample(prom, name + "_count", "{" + runLabel + "}", String.valueOf(cumulative));
+    }
+
+    private static void sample(StringBuilder prom, String name, String labels, String value) {
+        prom.append(PREFIX).append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+    }
+
+    /** Time spent in one stage on one thread. */
+    public static class Timer implements AutoCloseable {
+
+        private final Stage stage;
+
+        private final long startWall;
+
+        private final long startCpu;
+
+        private Timer(Stage stage, long startWall, long startCpu) {
+            this.stage = stage;
+            this.startWall = startWall;
+            this.startCpu = startCpu;
+        }
+
+        @Override
+        public void close() {
+            stage.calls.increment();
+            stage.wallNanos.add(System.nanoTime() - startWall);
+            stage.cpuNanos.add(cpuTime() - startCpu);
+        }
+    }
+}
@@ -3,44 +3,50 @@ package me.jacob;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.NodeList;
 import com.github.javaparser.ast.body.*;
-import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import com.github.javaparser.ast.type.Type;
 import com.github.javaparser.ast.type.TypeParameter;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import com.github.javaparser.resolution.declarations.ResolvedTypeParameterDeclaration;
+import me.jacob.entities.JvmParameterType;
 
+import java.util.List;
 import java.util.Optional;
-import java.util.Stack;
 
 public class NameMatcher {
 
-    private final CompilationUnit cu;
+    private final CompilationUnitIndex index;
     private final String longName;
     private String signature;
     private BodyDeclaration<?> result;
 
-    public NameMatcher(CompilationUnit cu, String longName) {
-        this.cu = cu;
+    public NameMatcher(CompilationUnitIndex index, String longName) {
+        this.index = index;
         this.longName = longName;
     }
 
     public void calculateMatchingNode() throws Exception {
-        var packageDeclaration = cu.getPackageDeclaration();
-        var packageName = "";
-        if (packageDeclaration.isPresent()) {
-            packageName = packageName + packageDeclaration.get().getNameAsString();
-        }
-
+        var packageName = index.getPackageName();
         if (!longName.startsWith(packageName)) {
             throw new Exception();
         }
 
         var startName = longName.substring(packageName.length());
-        var visitor = new NameConstructorVisitor();
-        cu.accept(visitor, startName);
-
-        signature = visitor.getSignature();
-        result = visitor.getResult();
+        var parametersStart = startName.indexOf('(');
+        var ownerAndName = parametersStart < 0 ? startName : startName.substring(0, parametersStart);
+        var candidates = index.getCandidates(ownerAndName);
+        if (parametersStart < 0 || candidates.isEmpty()) {
+            return;
+        }
+
+        // Parsed once per long name and shared with every other long name that has the same descriptor
+        var parameters = JvmParameterParser.parseCached(startName.substring(parametersStart + 1, startName.indexOf(')')));
+        for (var candidate : candidates) {
+            if (parameterMatches(candidate.getParameters(), parameters)) {
+                result = findRoot(candidate);
+                signature = calcSignature();
+                return;
+            }
+        }
     }
 
     public BodyDeclaration<?> getResult() {
@@ -56,233 +62,161 @@ public class NameMatcher {
     }
 
     public CompilationUnit getCu() {
-        return cu;
+        return index.getCompilationUnit();
     }
 
-    private static class NameConstructorVisitor extends VoidVisitorAdapter<String> {
+    private String calcSignature() {
+        if (result instanceof CallableDeclaration<?> callable) {
+            return callable.getSignature().asString();
+        } else if (result instanceof EnumConstantDeclaration c) {
+            return c.getNameAsString();
+        }
 
-        private BodyDeclaration<?> result;
-        private Stack<Integer> anonymousClassStack = new Stack<>();
-        private String signature;
+        return "unknown";
+    }
 
-        @Override
-        public void visit(final EnumConstantDeclaration enumConstantDec, String name) {
-            if (enumConstantDec.getClassBody().size() > 0) {
-                handleAnonymousClassBody(name, enumConstantDec.getClassBody());
+    private BodyDeclaration<?> findRoot(BodyDeclaration<?> node) {
+        BodyDeclaration<?> current = node;
+
+        // Traverse upwards through method, constructor, and enum constant declarations
+        while (true) {
+            Optional<MethodDeclaration> methodAncestor = current.findAncestor(MethodDeclaration.class);
+            Optional<ConstructorDeclaration> constructorAncestor = current.findAncestor(ConstructorDeclaration.class);
+            Optional<EnumConstantDeclaration> enumConstantAncestor = current.findAncestor(EnumConstantDeclaration.class);
+
+            // Choose the first present ancestor (if any)
+            if (methodAncestor.isPresent()) {
+                current = methodAncestor.get();
+            } else if (constructorAncestor.isPresent()) {
+                current = constructorAncestor.get();
+            } else if (enumConstantAncestor.isPresent()) {
+                current = enumConstantAncestor.get();
             } else {
-                super.visit(enumConstantDec, name);
+                break; // No more ancestors found, so we've reached the root
             }
         }
 
-        @Override
-        public void visit(final ObjectCreationExpr objectCreationExpr, String name) {
-            objectCreationExpr.getAnonymousClassBody().ifPresentOrElse(body -> {
-                handleAnonymousClassBody(name, body);
-            }, () -> {
-                super.visit(objectCreationExpr, name);
-            });
-        }
-
-        private void handleAnonymousClassBody(String name, NodeList<BodyDeclaration<?>> body) {
-            var anonymousClassNumber = anonymousClassStack.peek();
-            String expectedPrefix = "$" + anonymousClassNumber;
-
-            // Check if the name matches this level of nesting
-            if (name.startsWith(expectedPrefix)) {
-                anonymousClassStack.push(1);
-                super.visit(body, name.substring(expectedPrefix.length()));
-                anonymousClassStack.pop();
-            }
-
-            // Increment the stack to track the next anonymous class
-            anonymousClassStack.push(anonymousClassStack.pop() + 1);
-        }
+        return current;
+    }
 
-        @Override
-        public void visit(final ClassOrInterfaceDeclaration classDeclaration, String name) {
-            anonymousClassStack.push(1);
-            var length = classDeclaration.getNameAsString().length() + 1;
-            if (classDeclaration.isNestedType() && name.startsWith("$" + classDeclaration.getNameAsString())) {
-                super.visit(classDeclaration, name.substring(length));
-            } else if (name.startsWith("." + classDeclaration.getNameAsString())) {
-                super.visit(classDeclaration, name.substring(length));
-            }
-            anonymousClassStack.pop();
+    private boolean parameterMatches(NodeList<Parameter> parameters, List<JvmParameterType> parsed) {
+        // Overloads are tried in source order, so a shorter overload must not match as a prefix
+        if (parsed.size() != parameters.size()) {
+            return false;
         }
 
-        @Override
-        public void visit(final EnumDeclaration enumDeclaration, String name) {
-            anonymousClassStack.push(1);
-            var length = enumDeclaration.getNameAsString().length() + 1;
-            if (enumDeclaration.isNestedType() && name.startsWith("$" + enumDeclaration.getNameAsString())) {
-                super.visit(enumDeclaration, name.substring(length));
-            } else if (name.startsWith("." + enumDeclaration.getNameAsString())) {
-                super.visit(enumDeclaration, name.substring(length));
+        for (int i = 0; i < parameters.size(); i++) {
+            var paramType = parameters.get(i).getType();
+            var param = parameters.get(i);
+            var parsedType = parsed.get(i);
+            if (parsedType.isArray() != (paramType.isArrayType() || param.isVarArgs())) {
+                return false;
             }
-            anonymousClassStack.pop();
-        }
 
-        @Override
-        public void visit(final MethodDeclaration methodDeclaration, String name) {
-            if (!name.startsWith("." + methodDeclaration.getNameAsString())) {
-                super.visit(methodDeclaration, name);
-                return;
+            if (!parsedType.isArray() && paramType.getArrayLevel() != (param.isVarArgs() ? 1 : parsedType.getDimensionality())) {
+                return false;
             }
 
-            if (!parameterMatches(methodDeclaration.getParameters(), name)) {
-                super.visit(methodDeclaration, name);
-                return;
+            if (!namesEqual(parsedType, paramType)) {
+                return false;
             }
-
-            result = findRoot(methodDeclaration);
-            signature = calcSignature();
         }
 
-        private String calcSignature() {
-            if (result instanceof CallableDeclaration<?> callable) {
-                return callable.getSignature().asString();
-            } else if (result instanceof EnumConstantDeclaration c) {
-                return c.getNameAsString();
-            }
+        return true;
+    }
 
-            return "unknown";
+    private boolean namesEqual(JvmParameterType parsedType, Type paramName) {
+        if (simpleNameEquals(parsedType, paramName.getElementType())) {
+            return true;
         }
 
-        public BodyDeclaration<?> findRoot(BodyDeclaration<?> node) {
-            BodyDeclaration<?> current = node;
-
-            // Traverse upwards through method, constructor, and enum constant declarations
-            while (true) {
-                Optional<MethodDeclaration> methodAncestor = current.findAncestor(MethodDeclaration.class);
-                Optional<ConstructorDeclaration> constructorAncestor = current.findAncestor(ConstructorDeclaration.class);
-                Optional<EnumConstantDeclaration> enumConstantAncestor = current.findAncestor(EnumConstantDeclaration.class);
-
-                // Choose the first present ancestor (if any)
-                if (methodAncestor.isPresent()) {
-                    current = methodAncestor.get();
-                } else if (constructorAncestor.isPresent()) {
-                    current = constructorAncestor.get();
-                } else if (enumConstantAncestor.isPresent()) {
-                    current = enumConstantAncestor.get();
-                } else {
-                    break; // No more ancestors found, so we've reached the root
+        //if is the paramName is generic, and the parsedName is an object, then it is a match, return true
+        var parsedName = parsedType.getTypeName();
+        try {
+            var resolved = paramName.resolve();
+
+            // If the type is a type parameter, check its bound
+            if (resolved.isTypeVariable()) {
+                var typeVariable = resolved.asTypeParameter();
+                if (typeVariable.declaredOnType() || typeVariable.declaredOnConstructor() || typeVariable.declaredOnMethod()) {
+                    // Compare the upper bound of the type parameter, default to Object if none
+                    var upperBound = getErasureBound(typeVariable);
+                    return upperBound.equals(parsedName) || "Object".equals(parsedName);
                 }
             }
-
-            return current;
+        } catch (Exception ignored) {
+            // Handle unresolved types
         }
 
 
-        @Override
-        public void visit(final ConstructorDeclaration constructorDeclaration, String name) {
-            if (!name.startsWith(".<init>")) {
-                super.visit(constructorDeclaration, name);
-                return;
-            }
-
-            if (!parameterMatches(constructorDeclaration.getParameters(), name)) {
-                super.visit(constructorDeclaration, name);
-                return;
-            }
+        return false;
+    }
 
-            result = findRoot(constructorDeclaration);
-            signature = calcSignature();
+    /**
+     * Compares the written type, without array brackets, against the parsed name or the parsed name without
+     * its outermost class (Outer.Inner may be written as Inner). Runs for every overload, so nothing is allocated
+     * for primitive and class types.
+     */
+    private boolean simpleNameEquals(JvmParameterType parsedType, Type elementType) {
+        var parsedName = parsedType.getTypeName();
+        var nestedStart = parsedType.getNestedNameStart();
+        if (elementType.isPrimitiveType()) {
+            return elementType.asPrimitiveType().getType().asString().equals(parsedName);
         }
 
-        private boolean parameterMatches(NodeList<Parameter> parameters, String fullSig) {
-            int startIndex = fullSig.indexOf('(');
-            int endIndex = fullSig.indexOf(')');
-            String paramSection = fullSig.substring(startIndex + 1, endIndex);
-
-            // Split the parameter section into individual JVM types
-            var parsed = new JvmParameterParser().parseParameters(paramSection);
-            for (int i = 0; i < parameters.size(); i++) {
-                if (i >= parsed.size()) {
-                    return false;
-                }
-
-                var paramType = parameters.get(i).getType();
-                var param = parameters.get(i);
-                var parsedType = parsed.get(i);
-                if (!namesEqual(parsedType.getTypeName(), paramType)) {
-                    return false;
-                }
-
-                if (parsedType.isArray() != (paramType.isArrayType() || param.isVarArgs())) {
-                    return false;
-                }
-
-                if (!parsedType.isArray() && paramType.getArrayLevel() != (param.isVarArgs() ? 1 : parsedType.getDimensionality())) {
-                    return false;
-                }
+        if (elementType.isClassOrInterfaceType()) {
+            var classType = elementType.asClassOrInterfaceType();
+            if (classType.getTypeArguments().isPresent()) {
+                // Generic types are compared by their name alone
+                var identifier = classType.getName().getIdentifier();
+                return regionEquals(parsedName, 0, identifier)
+                        || (nestedStart > 0 && regionEquals(parsedName, nestedStart, identifier));
             }
 
-            return true;
+            return qualifiedEquals(classType, parsedName, 0, parsedName.length())
+                    || (nestedStart > 0 && qualifiedEquals(classType, parsedName, nestedStart, parsedName.length()));
         }
 
-        private boolean namesEqual(String parsedName, Type paramName) {
-            var paramNameStr = paramName.asString();
-            if (paramName.isArrayType() && paramNameStr.endsWith("[]")) {
-                while (paramNameStr.endsWith("[]")) {
-                    paramNameStr = paramNameStr.substring(0, paramNameStr.length() - 2);
-                }
-            }
-            if (paramName.isClassOrInterfaceType() && paramName.asClassOrInterfaceType().getTypeArguments().isPresent()) {
-                paramNameStr = paramName.asClassOrInterfaceType().getName().asString();
-            }
-            if (paramNameStr.equals(parsedName)) {
-                return true;
-            }
-
-            if (parsedName.contains(".") && paramNameStr.equals(parsedName.substring(parsedName.indexOf(".") + 1))) {
-                return true;
-            }
-
-            //if is the paramName is generic, and the parsedName is an object, then it is a match, return true
-            try {
-                var resolved = paramName.resolve();
-
-                // If the type is a type parameter, check its bound
-                if (resolved.isTypeVariable()) {
-                    var typeVariable = resolved.asTypeParameter();
-                    if (typeVariable.declaredOnType() || typeVariable.declaredOnConstructor() || typeVariable.declaredOnMethod()) {
-                        // Compare the upper bound of the type parameter, default to Object if none
-                        var upperBound = getErasureBound(typeVariable);
-                        return upperBound.equals(parsedName) || "Object".equals(parsedName);
-                    }
-                }
-            } catch (Exception ignored) {
-                // Handle unresolved types
-            }
-
+        var paramNameStr = elementType.asString();
+        return paramNameStr.equals(parsedName)
+                || (nestedStart > 0 && paramNameStr.equals(parsedName.substring(nestedStart)));
+    }
 
+    // Whether name[from, to) spells the type with its scope, e.g. "Map.Entry"
+    private static boolean qualifiedEquals(ClassOrInterfaceType type, String name, int from, int to) {
+        var identifier = type.getName().getIdentifier();
+        int start = to - identifier.length();
+        if (start < from || !name.startsWith(identifier, start)) {
             return false;
         }
 
-        private String getErasureBound(ResolvedTypeParameterDeclaration typeVariable) {
-            var astOpt = typeVariable.toAst();
-            if (!astOpt.isPresent()) {
-                return "Object";
-            }
+        var scope = type.getScope();
+        if (scope.isEmpty()) {
+            return start == from;
+        }
 
-            var ast = astOpt.get();
-            if (!(ast instanceof TypeParameter typeParameter)) {
-                return "Object";
-            }
+        return start - 1 > from && name.charAt(start - 1) == '.' && qualifiedEquals(scope.get(), name, from, start - 1);
+    }
 
-            if (typeParameter.getTypeBound().isEmpty()) {
-                return "Object";
-            }
+    private static boolean regionEquals(String name, int from, String identifier) {
+        return name.length() - from == identifier.length() && name.startsWith(identifier, from);
+    }
 
-            return typeParameter.getTypeBound().get(0).getNameAsString();
+    private String getErasureBound(ResolvedTypeParameterDeclaration typeVariable) {
+        var astOpt = typeVariable.toAst();
+        if (!astOpt.isPresent()) {
+            return "Object";
         }
 
-        public BodyDeclaration<?> getResult() {
-            return result;
+        var ast = astOpt.get();
+        if (!(ast instanceof TypeParameter typeParameter)) {
+            return "Object";
         }
 
-        public String getSignature() {
-            return signature;
+        if (typeParameter.getTypeBound().isEmpty()) {
+            return "Object";
         }
+
+        return typeParameter.getTypeBound().get(0).getNameAsString();
     }
 }
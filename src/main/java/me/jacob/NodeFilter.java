@@ -0,0 +1,36 @@
+package me.jacob;
+
+import java.util.function.Predicate;
+
+/**
+ * Decides by signature which declarations reached during call graph expansion become nodes. Excluded
+ * declarations get no node and no edges. Unless the filter prunes, the expansion still continues
+ * through them, so that the methods they call are found as before.
+ */
+public class NodeFilter {
+
+    // Test methods are not part of the training data
+    public static final NodeFilter EXCLUDE_TESTS = new NodeFilter(signature -> !signature.contains("test"), false);
+
+    private final Predicate<String> includes;
+
+    private final boolean prune;
+
+    public NodeFilter(Predicate<String> includes, boolean prune) {
+        this.includes = includes;
+        this.prune = prune;
+    }
+
+    public boolean includes(String signature) {
+        return includes.test(signature);
+    }
+
+    /** Whether the expansion stops at excluded declarations instead of continuing to their callees. */
+    public boolean isPrune() {
+        return prune;
+    }
+
+    public NodeFilter withPrune(boolean prune) {
+        return new NodeFilter(includes, prune);
+    }
+}
@@ -0,0 +1,238 @@
+package me.jacob;
+
+import com.opencsv.bean.HeaderColumnNameMappingStrategy;
+import com.opencsv.bean.StatefulBeanToCsv;
+import com.opencsv.bean.StatefulBeanToCsvBuilder;
+import com.opencsv.exceptions.CsvDataTypeMismatchException;
+import com.opencsv.exceptions.CsvRequiredFieldEmptyException;
+import me.jacob.entities.EdgeOutput;
+import me.jacob.entities.NodeOutput;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Streams node and edge batches to nodes.csv and edges.csv from a single writer thread.
+ * Workers hand over the output of one file group at a time; the queue is bounded so
+ * workers block rather than letting finished results pile up on the heap.
+ * Every flushed batch is recorded in the checkpoint journal, and when the journal was resumed both
+ * files are cut back to its last entry and appended to instead of being rewritten.
+ */
+public class OutputWriter<T extends NodeOutput> implements AutoCloseable {
+
+    private static final int QUEUE_CAPACITY = 64;
+
+    private static final Batch<?> END = new Batch<>(null, List.of(), List.of());
+
+    private final BlockingQueue<Batch<?>> queue;
+
+    private final Thread thread;
+
+    private final CheckpointJournal journal;
+
+    private final FileChannel nodeChannel;
+
+    private final FileChannel edgeChannel;
+
+    private final Writer nodeFile;
+
+    private final Writer edgeFile;
+
+    private final StatefulBeanToCsv<T> nodeWriter;
+
+    private final StatefulBeanToCsv<EdgeOutput> edgeWriter;
+
+    private volatile Exception failure;
+
+    public OutputWriter(File directory, Class<T> nodeType, CheckpointJournal journal) {
+        this.journal = journal;
+        try {
+            directory.mkdirs();
+            var nodeStream = openTruncated(new File(directory, "nodes.csv"), journal.getNodeBytes());
+            var edgeStream = openTruncated(new File(directory, "edges.csv"), journal.getEdgeBytes());
+            this.nodeChannel = nodeStream.getChannel();
+            this.edgeChannel = edgeStream.getChannel();
+            this.nodeFile = new BufferedWriter(new OutputStreamWriter(nodeStream, StandardCharsets.UTF_8));
+            this.edgeFile = new BufferedWriter(new OutputStreamWriter(edgeStream, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        this.nodeWriter = createWriter(nodeFile, nodeType, journal.getNodeBytes() > 0);
+        this.edgeWriter = createWriter(edgeFile, EdgeOutput.class, journal.getEdgeBytes() > 0);
+        this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        this.thread = new Thread(this::drain, "output-writer");
+        this.thread.start();
+    }
+
+    // Drops rows written after the last journal entry, they belong to groups that will run again
+    private static FileOutputStream openTruncated(File file, long length) throws IOException {
+        try (var channel = new RandomAccessFile(file, "rw").getChannel()) {
+            channel.truncate(length);
+        }
+
+        return new FileOutputStream(file, true);
+    }
+
+    private static <B> StatefulBeanToCsv<B> createWriter(Writer writer, Class<B> type, boolean append) {
+        var builder = new StatefulBeanToCsvBuilder<B>(writer);
+        if (append) {
+            var strategy = new AppendingMappingStrategy<B>();
+            strategy.setType(type);
+            builder.withMappingStrategy(strategy);
+        }
+
+        return builder.build();
+    }
+
+    /** Submits the output of the file group {@code key}, which is journaled once it is on disk. */
+    public void submit(String key, Collection<? extends T> nodes, Collection<EdgeOutput> edges) {
+        if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+
+        try {
+            queue.put(new Batch<>(key, nodes, edges));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Takes every batch that is waiting at once, so that they share one sync to disk
+    @SuppressWarnings("unchecked")
+    private void drain() {
+        var taken = new ArrayList<Batch<?>>();
+        var batches = new ArrayList<Batch<T>>();
+        try {
+            var end = false;
+            while (!end) {
+                taken.add(queue.take());
+                queue.drainTo(taken);
+                for (var batch : taken) {
+                    if (batch == END) {
+                        end = true;
+                    } else {
+                        batches.add((Batch<T>) batch);
+                    }
+                }
+
+                // Keep draining after a failure so that blocked workers can finish
+                if (failure == null && !batches.isEmpty()) {
+                    write(batches);
+                }
+                taken.clear();
+                batches.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(List<Batch<T>> batches) {
+        try (var ignored = Metrics.time(Metrics.Stage.OUTPUT_WRITE)) {
+            var nodeBytes = new long[batches.size()];
+            var edgeBytes = new long[batches.size()];
+            for (int i = 0; i < batches.size(); i++) {
+                var batch = batches.get(i);
+                for (var node : batch.nodes()) {
+                    nodeWriter.write(node);
+                }
+
+                for (var edge : batch.edges()) {
+                    edgeWriter.write(edge);
+                }
+
+                nodeFile.flush();
+                edgeFile.flush();
+                nodeBytes[i] = nodeChannel.position();
+                edgeBytes[i] = edgeChannel.position();
+            }
+
+            // The rows must survive a crash of the machine before the journal says they are there
+            nodeChannel.force(false);
+            edgeChannel.force(false);
+            for (int i = 0; i < batches.size(); i++) {
+                checkpoint(batches.get(i), nodeBytes[i], edgeBytes[i]);
+                Metrics.written(batches.get(i).nodes().size(), batches.get(i).edges());
+            }
+            journal.sync();
+        } catch (IOException | CsvRequiredFieldEmptyException | CsvDataTypeMismatchException | RuntimeException e) {
+            failure = e;
+        }
+    }
+
+    private void checkpoint(Batch<T> batch, long nodeBytes, long edgeBytes) {
+        int firstNodeId = Integer.MAX_VALUE, lastNodeId = -1;
+        int firstGraphId = Integer.MAX_VALUE, lastGraphId = -1;
+        for (var node : batch.nodes()) {
+            firstNodeId = Math.min(firstNodeId, node.getId());
+            lastNodeId = Math.max(lastNodeId, node.getId());
+            firstGraphId = Math.min(firstGraphId, node.getGraphId());
+            lastGraphId = Math.max(lastGraphId, node.getGraphId());
+        }
+
+        // Edges reference filtered out nodes too, so their ids count towards the range
+        for (var edge : batch.edges()) {
+            firstNodeId = Math.min(firstNodeId, Math.min(edge.getSource(), edge.getDestination()));
+            lastNodeId = Math.max(lastNodeId, Math.max(edge.getSource(), edge.getDestination()));
+            firstGraphId = Math.min(firstGraphId, edge.getGraphId());
+            lastGraphId = Math.max(lastGraphId, edge.getGraphId());
+        }
+
+        if (lastNodeId < 0) {
+            firstNodeId = -1;
+        }
+        if (lastGraphId < 0) {
+            firstGraphId = -1;
+        }
+
+        journal.record(batch.key(), nodeBytes, edgeBytes, firstNodeId, lastNodeId, firstGraphId, lastGraphId);
+    }
+
+    @Override
+    public void close() {
+        try {
+            queue.put(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            try {
+                nodeFile.close();
+                edgeFile.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+    }
+
+    private record Batch<T>(String key, Collection<? extends T> nodes, Collection<EdgeOutput> edges) {
+    }
+
+    /**
+     * Writes columns in the usual order but no header line, for files that already start with one.
+     * The header still has to be generated since it fixes the column order.
+     */
+    private static class AppendingMappingStrategy<B> extends HeaderColumnNameMappingStrategy<B> {
+
+        @Override
+        public String[] generateHeader(B bean) throws CsvRequiredFieldEmptyException {
+            super.generateHeader(bean);
+            return new String[0];
+        }
+    }
+}
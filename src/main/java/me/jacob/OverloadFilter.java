@@ -0,0 +1,141 @@
+package me.jacob;
+
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.type.PrimitiveType.Primitive;
+import com.github.javaparser.ast.type.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Narrows the same named declarations a call was matched to by name down to the ones it can invoke,
+ * using the number of arguments and the types of literal arguments. It only rules out what javac would
+ * reject, so a declaration the symbol solver would pick is always kept.
+ */
+public class OverloadFilter {
+
+    private static final Set<String> BOXED_NUMBERS = Set.of("Byte", "Short", "Integer", "Long", "Float", "Double");
+
+    public static List<BodyDeclaration<?>> filter(List<BodyDeclaration<?>> candidates, NodeList<Expression> arguments) {
+        List<BodyDeclaration<?>> result = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            var candidate = candidates.get(i);
+            var applicable = !(candidate instanceof CallableDeclaration<?> callable) || isApplicable(callable, arguments);
+            if (!applicable && result == null) {
+                result = new ArrayList<>(candidates.subList(0, i));
+            } else if (applicable && result != null) {
+                result.add(candidate);
+            }
+        }
+
+        return result == null ? candidates : result;
+    }
+
+    private static boolean isApplicable(CallableDeclaration<?> callable, NodeList<Expression> arguments) {
+        var parameters = callable.getParameters();
+        var isVarArgs = !parameters.isEmpty() && parameters.getLast().get().isVarArgs();
+        if (isVarArgs ? arguments.size() < parameters.size() - 1 : arguments.size() != parameters.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < arguments.size(); i++) {
+            var argument = arguments.get(i);
+            if (isVarArgs && i >= parameters.size() - 1) {
+                // The parameter type of varargs is the element type, a null may also be the array itself
+                var passesArray = arguments.size() == parameters.size() && argument.isNullLiteralExpr();
+                if (!passesArray && !acceptsLiteral(parameters.getLast().get().getType(), argument)) {
+                    return false;
+                }
+                continue;
+            }
+
+            var type = parameters.get(i).getType();
+            if (type.isArrayType()) {
+                if (argument.isLiteralExpr() && !argument.isNullLiteralExpr()) {
+                    return false;
+                }
+            } else if (!acceptsLiteral(type, argument)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Whether a literal argument can be passed to a parameter of this type, other arguments are always accepted
+    private static boolean acceptsLiteral(Type type, Expression argument) {
+        if (argument.isNullLiteralExpr()) {
+            return !type.isPrimitiveType();
+        }
+
+        var primitive = type.isPrimitiveType() ? type.asPrimitiveType().getType() : null;
+        var name = primitive == null ? simpleName(type) : null;
+        if (argument.isStringLiteralExpr() || argument.isTextBlockLiteralExpr()) {
+            return primitive == null && !BOXED_NUMBERS.contains(name) && !name.equals("Boolean") && !name.equals("Character");
+        }
+
+        if (argument.isBooleanLiteralExpr()) {
+            if (primitive != null) {
+                return primitive == Primitive.BOOLEAN;
+            }
+            return !BOXED_NUMBERS.contains(name) && !name.equals("String") && !name.equals("Character");
+        }
+
+        var literal = numericLiteral(argument);
+        if (literal == null) {
+            return true;
+        }
+
+        if (primitive != null) {
+            return isWidening(literal, primitive);
+        }
+
+        if (name.equals("String") || name.equals("Boolean")) {
+            return false;
+        }
+
+        // Boxing never widens, an int literal does not become a Long
+        if (name.equals("Character") || BOXED_NUMBERS.contains(name)) {
+            return name.equals(literal.toBoxedType().getNameAsString());
+        }
+
+        return true;
+    }
+
+    private static Primitive numericLiteral(Expression argument) {
+        if (argument.isIntegerLiteralExpr()) {
+            return Primitive.INT;
+        } else if (argument.isLongLiteralExpr()) {
+            return Primitive.LONG;
+        } else if (argument.isCharLiteralExpr()) {
+            return Primitive.CHAR;
+        } else if (argument.isDoubleLiteralExpr()) {
+            var value = argument.asDoubleLiteralExpr().getValue();
+            return Character.toLowerCase(value.charAt(value.length() - 1)) == 'f' ? Primitive.FLOAT : Primitive.DOUBLE;
+        }
+
+        return null;
+    }
+
+    // Method invocation allows widening primitive conversions, but not the narrowing of constants
+    private static boolean isWidening(Primitive from, Primitive to) {
+        if (from == to) {
+            return true;
+        }
+
+        return switch (from) {
+            case CHAR, INT -> to == Primitive.INT || to == Primitive.LONG || to == Primitive.FLOAT || to == Primitive.DOUBLE;
+            case LONG -> to == Primitive.FLOAT || to == Primitive.DOUBLE;
+            case FLOAT -> to == Primitive.DOUBLE;
+            default -> false;
+        };
+    }
+
+    private static String simpleName(Type type) {
+        return type.isClassOrInterfaceType() ? type.asClassOrInterfaceType().getNameAsString() : type.asString();
+    }
+}
@@ -0,0 +1,101 @@
+package me.jacob;
+
+import me.jacob.util.DenseIdMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Random access to the methods of one segment written by {@link PackedMethodSourceSink}, either by node id
+ * or by the reference from the method-source-file column. Reads are positional, so one reader can be
+ * shared between threads.
+ */
+public class PackedMethodSourceReader implements AutoCloseable {
+
+    private final FileChannel data;
+
+    private final DenseIdMap ids;
+
+    private long[] offsets;
+
+    private int[] lengths;
+
+    /**
+     * @param directory the directory holding methods.seg and methods.idx, e.g. {@code output/<project>}
+     */
+    public PackedMethodSourceReader(File directory) throws IOException {
+        this.data = FileChannel.open(directory.toPath().resolve(PackedMethodSourceSink.SEGMENT_FILE), StandardOpenOption.READ);
+        var index = ByteBuffer.wrap(Files.readAllBytes(directory.toPath().resolve(PackedMethodSourceSink.INDEX_FILE)));
+        int entries = index.remaining() / PackedMethodSourceSink.INDEX_ENTRY_BYTES;
+        this.ids = new DenseIdMap(entries);
+        this.offsets = new long[entries];
+        this.lengths = new int[entries];
+        for (int i = 0; i < entries; i++) {
+            int id = index.getInt();
+            long offset = index.getLong();
+            int length = index.getInt();
+            // A resumed run may write an id again, the later entry is the one in nodes.csv
+            int slot = ids.getOrAssign(id);
+            offsets[slot] = offset;
+            lengths[slot] = length;
+        }
+
+        offsets = Arrays.copyOf(offsets, ids.size());
+        lengths = Arrays.copyOf(lengths, ids.size());
+    }
+
+    /** The source of method {@code id}, or null if the segment does not contain it. */
+    public String read(int id) throws IOException {
+        int slot = ids.get(id);
+        if (slot < 0) {
+            return null;
+        }
+
+        return read(data, offsets[slot], lengths[slot]);
+    }
+
+    /**
+     * Resolves a method-source-file reference of the form {@code <directory>/methods.seg#<offset>:<length>}
+     * against the output directory.
+     */
+    public static String read(File outputDirectory, String reference) throws IOException {
+        int hash = reference.lastIndexOf('#');
+        int colon = reference.lastIndexOf(':');
+        if (hash < 0 || colon < hash) {
+            throw new IllegalArgumentException("Not a segment reference " + reference);
+        }
+
+        long offset = Long.parseLong(reference.substring(hash + 1, colon));
+        int length = Integer.parseInt(reference.substring(colon + 1));
+        try (var channel = FileChannel.open(Path.of(outputDirectory.getPath(), reference.substring(0, hash)), StandardOpenOption.READ)) {
+            return read(channel, offset, length);
+        }
+    }
+
+    private static String read(FileChannel channel, long offset, int length) throws IOException {
+        var buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Segment ends before " + (offset + length));
+            }
+        }
+
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        data.close();
+    }
+}
@@ -0,0 +1,116 @@
+package me.jacob;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Appends all methods below a directory to one segment file, {@code <directory>/methods.seg}, instead of
+ * creating a file per method. Next to it {@code methods.idx} holds one fixed size entry per method:
+ * <pre>int id, long offset, int length</pre>
+ * in big-endian order, offsets and lengths counted in bytes of UTF-8. The column reference is
+ * {@code <directory>/methods.seg#<offset>:<length>}, see {@link PackedMethodSourceReader} for lookups.
+ */
+public class PackedMethodSourceSink implements MethodSourceSink {
+
+    public static final String SEGMENT_FILE = "methods.seg";
+
+    public static final String INDEX_FILE = "methods.idx";
+
+    static final int INDEX_ENTRY_BYTES = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final File outputDirectory;
+
+    private final boolean append;
+
+    private final Map<String, Segment> segments;
+
+    /**
+     * @param append keep the segments of an earlier run and add to them, used when resuming
+     */
+    public PackedMethodSourceSink(File outputDirectory, boolean append) {
+        this.outputDirectory = outputDirectory;
+        this.append = append;
+        this.segments = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public String write(String directory, int id, String source) throws IOException {
+        var segment = segments.computeIfAbsent(directory, this::openSegment);
+        return Path.of(directory, SEGMENT_FILE) + "#" + segment.append(id, source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Segment openSegment(String directory) {
+        try {
+            var path = outputDirectory.toPath().resolve(directory);
+            Files.createDirectories(path);
+            var options = append
+                    ? new StandardOpenOption[]{StandardOpenOption.CREATE, StandardOpenOption.WRITE}
+                    : new StandardOpenOption[]{StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING};
+            return new Segment(FileChannel.open(path.resolve(SEGMENT_FILE), options), FileChannel.open(path.resolve(INDEX_FILE), options));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (var segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    /**
+     * One segment and its index. Each entry is written right after its bytes, unbuffered, so a run that
+     * gets killed never leaves an index entry pointing past the end of the segment.
+     */
+    private static class Segment {
+
+        private final FileChannel data;
+
+        private final FileChannel index;
+
+        private final ByteBuffer entry;
+
+        private long position;
+
+        Segment(FileChannel data, FileChannel index) throws IOException {
+            this.data = data;
+            this.index = index;
+            this.entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+            // Resumed runs append, an entry cut off by a kill is dropped
+            index.truncate(index.size() - index.size() % INDEX_ENTRY_BYTES);
+            index.position(index.size());
+            this.position = data.size();
+        }
+
+        synchronized String append(int id, byte[] bytes) throws IOException {
+            long offset = position;
+            var buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                position += data.write(buffer, position);
+            }
+
+            entry.clear();
+            entry.putInt(id).putLong(offset).putInt(bytes.length).flip();
+            while (entry.hasRemaining()) {
+                index.write(entry);
+            }
+
+            return offset + ":" + bytes.length;
+        }
+
+        synchronized void close() throws IOException {
+            data.close();
+            index.close();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package me.jacob;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import me.jacob.util.MemoizingTypeSolver;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.List;
+
+/**
+ * Hands out one reusable parser per worker thread. All parsers share a single JDK type solver,
+ * so java.lang/java.util types are only looked up once per run instead of once per file group.
+ */
+public class ParserPool {
+
+    private static final List<String> COMMON_TYPES = List.of(
+            "java.lang.Object", "java.lang.String", "java.lang.StringBuilder", "java.lang.Integer",
+            "java.lang.Long", "java.lang.Boolean", "java.lang.Double", "java.lang.Character",
+            "java.lang.Math", "java.lang.System", "java.lang.Exception", "java.lang.RuntimeException",
+            "java.lang.Iterable", "java.lang.Comparable", "java.lang.Enum", "java.lang.Class",
+            "java.util.List", "java.util.ArrayList", "java.util.Map", "java.util.HashMap",
+            "java.util.Set", "java.util.HashSet", "java.util.Collection", "java.util.Collections",
+            "java.util.Iterator", "java.util.Arrays", "java.util.Optional", "java.util.Objects");
+
+    private static final MemoizingTypeSolver TYPE_SOLVER = createTypeSolver();
+
+    private static final JavaSymbolSolver SYMBOL_SOLVER = new JavaSymbolSolver(TYPE_SOLVER);
+
+    private static final ThreadLocal<JavaParser> PARSERS = ThreadLocal.withInitial(ParserPool::createParser);
+
+    private static MemoizingTypeSolver createTypeSolver() {
+        var typeSolver = new MemoizingTypeSolver(new ReflectionTypeSolver());
+        typeSolver.warmUp(COMMON_TYPES);
+        return typeSolver;
+    }
+
+    private static JavaParser createParser() {
+        ParserConfiguration parserConfig = new ParserConfiguration().setSymbolResolver(SYMBOL_SOLVER);
+        return new JavaParser(parserConfig);
+    }
+
+    public static ParseResult<CompilationUnit> parse(File sourceFile) throws FileNotFoundException {
+        return PARSERS.get().parse(sourceFile);
+    }
+}
@@ -0,0 +1,114 @@
+package me.jacob;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prints the progress of a training run at a fixed interval from its own thread. Workers only add to
+ * counters, so reporting never makes them wait on stdout.
+ * <p>
+ * The ETA is estimated from the cost of the groups done so far rather than their number, because the
+ * largest groups are scheduled first and would otherwise make the start look much slower than the end.
+ */
+public class ProgressReporter implements AutoCloseable {
+
+    private final int totalGroups;
+
+    private final long totalCost;
+
+    private final long started;
+
+    private final LongAdder groups;
+
+    private final LongAdder failed;
+
+    private final LongAdder cost;
+
+    private final LongAdder nodes;
+
+    private final LongAdder edges;
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param totalCost       summed cost of all groups, see {@link me.jacob.entities.FileGroup#getCost()}
+     * @param intervalSeconds seconds between reports, 0 to only report at the end
+     */
+    public ProgressReporter(int totalGroups, long totalCost, long intervalSeconds) {
+        this.totalGroups = totalGroups;
+        this.totalCost = totalCost;
+        this.started = System.nanoTime();
+        this.groups = new LongAdder();
+        this.failed = new LongAdder();
+        this.cost = new LongAdder();
+        this.nodes = new LongAdder();
+        this.edges = new LongAdder();
+
+        if (intervalSeconds > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                var thread = new Thread(runnable, "progress");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleAtFixedRate(() -> System.out.println(report()), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    public void completed(long groupCost, int groupNodes, int groupEdges) {
+        groups.increment();
+        cost.add(groupCost);
+        nodes.add(groupNodes);
+        edges.add(groupEdges);
+    }
+
+    public void failed(long groupCost) {
+        groups.increment();
+        failed.increment();
+        cost.add(groupCost);
+    }
+
+    private String report() {
+        var elapsed = (System.nanoTime() - started) / 1e9;
+        var done = groups.sum();
+        var doneCost = cost.sum();
+        var report = new StringBuilder("Progress: ").append(done).append('/').append(totalGroups).append(" groups");
+        if (totalGroups > 0) {
+            report.append(String.format(" (%.1f%%)", 100.0 * done / totalGroups));
+        }
+        report.append(", ").append(nodes.sum()).append(" nodes, ").append(edges.sum()).append(" edges");
+        if (failed.sum() > 0) {
+            report.append(", ").append(failed.sum()).append(" failed");
+        }
+        report.append(String.format(", %.1f groups/s", elapsed > 0 ? done / elapsed : 0));
+
+        if (doneCost > 0 && doneCost < totalCost) {
+            var remaining = (long) (elapsed * (totalCost - doneCost) / doneCost);
+            report.append(", ETA ").append(formatDuration(remaining));
+        } else {
+            report.append(", elapsed ").append(formatDuration((long) elapsed));
+        }
+
+        return report.toString();
+    }
+
+    private static String formatDuration(long seconds) {
+        if (seconds >= 3600) {
+            return String.format("%dh %02dm", seconds / 3600, seconds / 60 % 60);
+        }
+
+        return String.format("%dm %02ds", seconds / 60, seconds % 60);
+    }
+
+    /** Stops the periodic reports and prints a final one. */
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        System.out.println(report());
+    }
+}
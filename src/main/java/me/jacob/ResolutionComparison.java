@@ -0,0 +1,52 @@
+package me.jacob;
+
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Run wide comparison of the edges found with the configured resolution mode against the edges
+ * {@link ResolutionMode#FULL} finds for the same file groups, on the sampled groups.
+ */
+public class ResolutionComparison {
+
+    private static final LongAdder Groups = new LongAdder();
+
+    private static final LongAdder IdenticalGroups = new LongAdder();
+
+    private static final LongAdder Shared = new LongAdder();
+
+    // Edges only the configured mode found
+    private static final LongAdder Extra = new LongAdder();
+
+    // Edges only full resolution found
+    private static final LongAdder Missing = new LongAdder();
+
+    public static void record(Set<String> edges, Set<String> fullEdges) {
+        long shared = 0;
+        for (var edge : edges) {
+            if (fullEdges.contains(edge)) {
+                shared++;
+            }
+        }
+
+        Groups.increment();
+        Shared.add(shared);
+        Extra.add(edges.size() - shared);
+        Missing.add(fullEdges.size() - shared);
+        if (shared == edges.size() && shared == fullEdges.size()) {
+            IdenticalGroups.increment();
+        }
+    }
+
+    public static long getGroups() {
+        return Groups.sum();
+    }
+
+    public static String summary(ResolutionMode mode) {
+        long fullEdges = Shared.sum() + Missing.sum();
+        return "Compared " + mode + " with FULL resolution on " + getGroups() + " groups: "
+                + IdenticalGroups.sum() + " identical, " + Shared.sum() + " shared edges, "
+                + Extra.sum() + " extra, " + Missing.sum() + " missing"
+                + (fullEdges == 0 ? "" : String.format(" (%.2f%% of FULL edges missing)", 100.0 * Missing.sum() / fullEdges));
+    }
+}
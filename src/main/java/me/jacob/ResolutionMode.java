@@ -0,0 +1,13 @@
+package me.jacob;
+
+/**
+ * How MethodContextFetcher connects method calls to the declarations they invoke.
+ */
+public enum ResolutionMode {
+    // Same class calls are matched by name only, the symbol solver is never used
+    SYNTACTIC,
+    // Like SYNTACTIC when the name leaves a single candidate or none, the symbol solver decides the rest
+    HYBRID,
+    // Every call is resolved with the symbol solver, matching by name only when it fails
+    FULL
+}
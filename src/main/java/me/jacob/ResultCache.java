@@ -0,0 +1,281 @@
+package me.jacob;
+
+import me.jacob.entities.BugRecordInput;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of file group results that survives between runs. An entry is keyed by the content hash of
+ * the class, the long names, parents and bug counts of the group's records and a hash of the extractor jar, and
+ * holds everything needed to emit the group again without parsing it: node signatures and sources, and the
+ * edges and graphs between them by position. Ids are handed out fresh when an entry is used.
+ * <p>
+ * The cache is bounded by size, once it grows past the limit the least recently used entries are removed.
+ */
+public class ResultCache {
+
+    // Bump whenever a change to the extraction makes earlier results wrong
+    private static final int FORMAT_VERSION = 2;
+
+    private static final String SUFFIX = ".bin";
+
+    private static final String EXTRACTOR_VERSION = extractorVersion();
+
+    private final Path directory;
+
+    private final long maxBytes;
+
+    private final AtomicLong size;
+
+    public ResultCache(File directory, long maxBytes) {
+        this.directory = directory.toPath();
+        this.maxBytes = maxBytes;
+        try {
+            Files.createDirectories(this.directory);
+            try (Stream<Path> entries = entries()) {
+                this.size = new AtomicLong(entries.mapToLong(ResultCache::sizeOf).sum());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param variant settings that change the result for the same input
+     */
+    public String key(String contentHash, Collection<BugRecordInput> inputs, String variant) {
+        var records = new ArrayList<String>(inputs.size());
+        for (var input : inputs) {
+            records.add(input.getLongName() + "\t" + input.getParent() + "\t" + input.getNumberOfBugs());
+        }
+        Collections.sort(records);
+
+        var key = new StringBuilder();
+        key.append(FORMAT_VERSION).append('\t').append(EXTRACTOR_VERSION)
+                .append('\t').append(variant).append('\t').append(contentHash).append('\n');
+        for (var record : records) {
+            key.append(record).append('\n');
+        }
+
+        return sha256(key.toString());
+    }
+
+    /** The cached result for {@code key}, or null if there is none. */
+    public Entry get(String key) {
+        var file = path(key);
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            var entry = read(in);
+            // Remember the use for eviction, a failure only makes the entry look older
+            try {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (IOException ignored) {
+            }
+            return entry;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            // Unreadable entries are dropped and computed again
+            e.printStackTrace();
+            delete(file);
+            return null;
+        }
+    }
+
+    public void put(String key, Entry entry) {
+        var file = path(key);
+        try {
+            Files.createDirectories(file.getParent());
+            // Another run or thread may have stored the same key, its size is counted already
+            var replaced = sizeOf(file);
+            var temporary = file.resolveSibling(UUID.randomUUID() + ".tmp");
+            try {
+                try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                    write(out, entry);
+                }
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+
+            if (size.addAndGet(sizeOf(file) - replaced) > maxBytes) {
+                evict();
+            }
+        } catch (IOException e) {
+            // A result that could not be cached is only computed again next time
+            e.printStackTrace();
+        }
+    }
+
+    // Deletes the least recently used entries until the cache is back to 90% of its limit
+    private synchronized void evict() throws IOException {
+        if (size.get() <= maxBytes) {
+            return;
+        }
+
+        List<Path> files;
+        try (Stream<Path> entries = entries()) {
+            files = new ArrayList<>(entries.toList());
+        }
+
+        var modified = new HashMap<Path, Long>(files.size() * 2);
+        long total = 0;
+        for (var file : files) {
+            modified.put(file, lastModified(file));
+            total += sizeOf(file);
+        }
+        files.sort(Comparator.comparingLong(modified::get));
+
+        long target = maxBytes / 10 * 9;
+        for (var file : files) {
+            if (total <= target) {
+                break;
+            }
+            total -= sizeOf(file);
+            delete(file);
+        }
+        size.set(total);
+    }
+
+    private Stream<Path> entries() throws IOException {
+        return Files.walk(directory).filter(file -> file.getFileName().toString().endsWith(SUFFIX));
+    }
+
+    private Path path(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + SUFFIX);
+    }
+
+    private static Entry read(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unexpected cache entry version");
+        }
+
+        int nodeCount = in.readInt();
+        var nodes = new ArrayList<Node>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            nodes.add(new Node(readString(in), readString(in), readString(in), in.readInt(), in.readInt(), readString(in)));
+        }
+
+        int edgeCount = in.readInt();
+        var edges = new ArrayList<Edge>(edgeCount);
+        for (int i = 0; i < edgeCount; i++) {
+            edges.add(new Edge(in.readInt(), in.readInt(), in.readInt()));
+        }
+
+        return new Entry(nodes, edges);
+    }
+
+    private static void write(DataOutputStream out, Entry entry) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(entry.nodes().size());
+        for (var node : entry.nodes()) {
+            writeString(out, node.signature());
+            writeString(out, node.parent());
+            writeString(out, node.oldLongName());
+            out.writeInt(node.numberOfBugs());
+            out.writeInt(node.graph());
+            writeString(out, node.source());
+        }
+
+        out.writeInt(entry.edges().size());
+        for (var edge : entry.edges()) {
+            out.writeInt(edge.source());
+            out.writeInt(edge.destination());
+            out.writeInt(edge.graph());
+        }
+    }
+
+    // writeUTF is limited to 64KB, which long methods exceed
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Any rebuild of the jar starts over with fresh entries, run from a classes directory only the version is known
+    private static String extractorVersion() {
+        var version = String.valueOf(App.class.getPackage().getImplementationVersion());
+        try {
+            var location = Path.of(App.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            if (!Files.isRegularFile(location)) {
+                return version;
+            }
+
+            var digest = MessageDigest.getInstance("SHA-256");
+            try (var in = new DigestInputStream(new BufferedInputStream(Files.newInputStream(location)), digest)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            return version + "-" + HexFormat.of().formatHex(digest.digest());
+        } catch (IOException | URISyntaxException | NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The result of one file group. Nodes refer to each other by their position in {@code nodes},
+     * and graphs are numbered from 0 in the order their ids were handed out; -1 means no graph.
+     */
+    public record Entry(List<Node> nodes, List<Edge> edges) {
+    }
+
+    public record Node(String signature, String parent, String oldLongName, int numberOfBugs, int graph, String source) {
+    }
+
+    public record Edge(int source, int destination, int graph) {
+    }
+}
@@ -0,0 +1,193 @@
+package me.jacob;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.CSVWriter;
+import com.opencsv.RFC4180ParserBuilder;
+import com.opencsv.exceptions.CsvValidationException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Puts the outputs of the shards of a training run together into one nodes.csv and edges.csv. Shards hand out
+ * disjoint ids, so rows are copied as they are; only the class and method source columns are rewritten to stay
+ * valid from the merged directory, the files themselves stay in the shard directories.
+ * <p>
+ * Only rows recorded in a shard's journal are taken, the rows of groups an interrupted shard did not finish are
+ * left out just like a resumed run would drop them.
+ */
+public class ShardMerger {
+
+    private static final List<String> FILE_COLUMNS = List.of("CLASS-SOURCE-FILE", "METHOD-SOURCE-FILE");
+
+    private final List<File> shards;
+
+    private final File outputDirectory;
+
+    private final BitSet nodeIds;
+
+    public ShardMerger(List<File> shards, File outputDirectory) {
+        this.shards = shards;
+        this.outputDirectory = outputDirectory;
+        this.nodeIds = new BitSet();
+    }
+
+    public void merge() {
+        outputDirectory.mkdirs();
+        try (var nodes = new CSVWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(outputDirectory, "nodes.csv")), StandardCharsets.UTF_8)));
+             var edges = new CSVWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(outputDirectory, "edges.csv")), StandardCharsets.UTF_8)))) {
+            String[] nodeHeader = null;
+            String[] edgeHeader = null;
+            for (var shard : shards) {
+                var journal = CheckpointJournal.read(shard);
+                warnAboutUncommitted(shard, "nodes.csv", journal.getNodeBytes());
+                warnAboutUncommitted(shard, "edges.csv", journal.getEdgeBytes());
+
+                nodeHeader = copyNodes(shard, journal.getNodeBytes(), nodes, nodeHeader);
+                edgeHeader = copyEdges(shard, journal.getEdgeBytes(), edges, edgeHeader);
+                System.out.println("Merged " + journal.getCompletedCount() + " file groups from " + shard);
+            }
+        } catch (IOException | CsvValidationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void warnAboutUncommitted(File shard, String name, long committedBytes) {
+        var file = new File(shard, name);
+        if (file.length() > committedBytes) {
+            System.out.println(shard + " has rows of unfinished file groups in " + name + ", they are left out. Finish the shard with --resume first.");
+        }
+    }
+
+    private String[] copyNodes(File shard, long bytes, CSVWriter out, String[] header) throws IOException, CsvValidationException {
+        if (bytes == 0) {
+            return header;
+        }
+
+        try (var reader = open(new File(shard, "nodes.csv"), bytes)) {
+            var shardHeader = checkHeader(shard, "nodes.csv", reader.readNext(), header, out);
+            int id = indexOf(shardHeader, "ID");
+            var fileColumns = FILE_COLUMNS.stream().mapToInt(column -> indexOf(shardHeader, column)).toArray();
+            var shardPath = shard.toPath().toAbsolutePath().normalize();
+            var outputPath = outputDirectory.toPath().toAbsolutePath().normalize();
+
+            String[] row;
+            while ((row = reader.readNext()) != null) {
+                var nodeId = Integer.parseInt(row[id]);
+                if (nodeIds.get(nodeId)) {
+                    throw new IllegalStateException("Node id " + nodeId + " of " + shard + " was already merged, "
+                            + "were all shards run with the same --shard count?");
+                }
+                nodeIds.set(nodeId);
+
+                for (var column : fileColumns) {
+                    row[column] = relocate(row[column], shardPath, outputPath);
+                }
+                out.writeNext(row);
+            }
+
+            return shardHeader;
+        }
+    }
+
+    private String[] copyEdges(File shard, long bytes, CSVWriter out, String[] header) throws IOException, CsvValidationException {
+        if (bytes == 0) {
+            return header;
+        }
+
+        try (var reader = open(new File(shard, "edges.csv"), bytes)) {
+            var shardHeader = checkHeader(shard, "edges.csv", reader.readNext(), header, out);
+            String[] row;
+            while ((row = reader.readNext()) != null) {
+                out.writeNext(row);
+            }
+
+            return shardHeader;
+        }
+    }
+
+    // The first shard's header is written, the others must have the same columns
+    private static String[] checkHeader(File shard, String name, String[] shardHeader, String[] header, CSVWriter out) {
+        if (header == null) {
+            out.writeNext(shardHeader);
+            return shardHeader;
+        }
+
+        if (!Arrays.equals(header, shardHeader)) {
+            throw new IllegalStateException(name + " of " + shard + " has different columns than the shards before it");
+        }
+        return header;
+    }
+
+    private static int indexOf(String[] header, String column) {
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].equals(column)) {
+                return i;
+            }
+        }
+
+        throw new IllegalStateException("nodes.csv has no " + column + " column");
+    }
+
+    // Makes a path relative to the shard relative to the merged output, packed references keep their #offset:length
+    private static String relocate(String reference, Path shard, Path output) {
+        if (reference == null || reference.isEmpty()) {
+            return reference;
+        }
+
+        var split = reference.indexOf('#');
+        var path = split < 0 ? reference : reference.substring(0, split);
+        var rest = split < 0 ? "" : reference.substring(split);
+        return output.relativize(shard.resolve(path).normalize()) + rest;
+    }
+
+    private static CSVReader open(File file, long bytes) throws IOException {
+        var in = new LimitedInputStream(new BufferedInputStream(new FileInputStream(file)), bytes);
+        // Quotes are escaped by doubling them in the output, backslashes are plain characters
+        return new CSVReaderBuilder(new InputStreamReader(in, StandardCharsets.UTF_8))
+                .withCSVParser(new RFC4180ParserBuilder().build())
+                .build();
+    }
+
+    /** Ends after the journaled part of a file. */
+    private static class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
@@ -2,7 +2,7 @@ package me.jacob.entities;
 
 import com.opencsv.bean.CsvBindByName;
 
-public class BugRecordOutput {
+public class BugRecordOutput implements NodeOutput {
     @CsvBindByName(column = "id")
     private int id;
     @CsvBindByName(column = "project")
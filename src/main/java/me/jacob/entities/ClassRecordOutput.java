@@ -2,7 +2,7 @@ package me.jacob.entities;
 
 import com.opencsv.bean.CsvBindByName;
 
-public class ClassRecordOutput {
+public class ClassRecordOutput implements NodeOutput {
 
     @CsvBindByName(column = "id")
     private int id;
@@ -0,0 +1,44 @@
+package me.jacob.entities;
+
+import java.util.List;
+
+public class FileGroup {
+
+    private final String key;
+    private final List<BugRecordInput> records;
+    private final long sourceSize;
+
+    public FileGroup(String key, List<BugRecordInput> records, long sourceSize) {
+        this.key = key;
+        this.records = records;
+        this.sourceSize = sourceSize;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public List<BugRecordInput> getRecords() {
+        return records;
+    }
+
+    public long getSourceSize() {
+        return sourceSize;
+    }
+
+    public long getCost() {
+        return cost(sourceSize, records.size());
+    }
+
+    // Parsing grows with the file size and every record starts another context expansion over it
+    public static long cost(long sourceSize, int records) {
+        return Math.max(sourceSize, 1) * records;
+    }
+
+    /** Records with the same key belong to the same class at the same commit and share one file group. */
+    public static String keyOf(BugRecordInput record) {
+        var splindex = record.getParent().indexOf('$');
+        var adjustedParent = splindex < 0 ? record.getParent() : record.getParent().substring(0, splindex);
+        return record.getProject() + "#" + record.getHash() + "://" + adjustedParent;
+    }
+}
@@ -4,17 +4,20 @@ public class JvmParameterType {
     private final String typeName;
     private final boolean isArray;
     private final int dimensionality;
+    private final int nestedNameStart;
 
     public JvmParameterType(String typeName) {
         this.typeName = typeName;
         this.dimensionality = 0;
         this.isArray = false;
+        this.nestedNameStart = typeName.indexOf('.') + 1;
     }
 
     public JvmParameterType(String typeName, int dimensionality) {
         this.typeName = typeName;
         this.dimensionality = dimensionality;
         this.isArray = true;
+        this.nestedNameStart = typeName.indexOf('.') + 1;
     }
 
     public String getTypeName() {
@@ -33,4 +36,9 @@ public class JvmParameterType {
     public int getDimensionality() {
         return dimensionality;
     }
+
+    // Where the name continues after the outermost class (Outer.Inner -> Inner), 0 if it is not nested
+    public int getNestedNameStart() {
+        return nestedNameStart;
+    }
 }
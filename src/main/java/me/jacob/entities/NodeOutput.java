@@ -0,0 +1,8 @@
+package me.jacob.entities;
+
+public interface NodeOutput {
+
+    int getId();
+
+    int getGraphId();
+}
@@ -0,0 +1,56 @@
+package me.jacob.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe histogram of non-negative values with power of two buckets, 1, 2, 4, ... up to
+ * {@code 2^(buckets - 1)} and one more for everything larger.
+ */
+public class Histogram {
+
+    private final LongAdder[] counts;
+
+    private final LongAdder sum;
+
+    public Histogram(int buckets) {
+        this.counts = new LongAdder[buckets + 1];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+        this.sum = new LongAdder();
+    }
+
+    public void record(long value) {
+        // The smallest bucket whose upper bound is at least the value
+        int bucket = value <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(value - 1);
+        counts[Math.min(bucket, counts.length - 1)].increment();
+        sum.add(value);
+    }
+
+    /** Number of buckets with an upper bound, the overflow bucket is not counted. */
+    public int getBuckets() {
+        return counts.length - 1;
+    }
+
+    public long getUpperBound(int bucket) {
+        return 1L << bucket;
+    }
+
+    /** Values recorded in {@code bucket}, or above the last bound for {@code bucket == getBuckets()}. */
+    public long getCount(int bucket) {
+        return counts[bucket].sum();
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (var bucket : counts) {
+            count += bucket.sum();
+        }
+
+        return count;
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+}
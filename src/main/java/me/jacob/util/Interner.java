@@ -0,0 +1,21 @@
+package me.jacob.util;
+
+import java.util.HashMap;
+
+/**
+ * Replaces equal strings by one shared instance. Unlike {@link String#intern()} the strings are released
+ * together with the interner. Every distinct value is kept until then, so it suits values with few variants.
+ */
+public class Interner {
+
+    private final HashMap<String, String> values = new HashMap<>();
+
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        var existing = values.putIfAbsent(value, value);
+        return existing == null ? value : existing;
+    }
+}
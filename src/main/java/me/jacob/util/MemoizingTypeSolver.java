@@ -0,0 +1,71 @@
+package me.jacob.util;
+
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe type solver that remembers every lookup of its delegate, solved or not.
+ * The delegate must be free of per-compilation-unit state (e.g. a ReflectionTypeSolver),
+ * so that one instance can be shared between all workers.
+ */
+public class MemoizingTypeSolver implements TypeSolver {
+
+    // Unsolved names are mostly project types, stop remembering them once there are this many
+    private static final int MAX_UNSOLVED = 100_000;
+
+    private final TypeSolver delegate;
+
+    private final Map<String, SymbolReference<ResolvedReferenceTypeDeclaration>> solved;
+
+    private final Map<String, Boolean> unsolved;
+
+    private TypeSolver parent;
+
+    public MemoizingTypeSolver(TypeSolver delegate) {
+        this.delegate = delegate;
+        this.solved = new ConcurrentHashMap<>();
+        this.unsolved = new ConcurrentHashMap<>();
+        delegate.setParent(this);
+    }
+
+    @Override
+    public TypeSolver getParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(TypeSolver parent) {
+        this.parent = parent;
+    }
+
+    @Override
+    public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+        var reference = solved.get(name);
+        if (reference != null) {
+            return reference;
+        }
+
+        if (unsolved.containsKey(name)) {
+            return SymbolReference.unsolved();
+        }
+
+        reference = delegate.tryToSolveType(name);
+        if (reference.isSolved()) {
+            solved.putIfAbsent(name, reference);
+        } else if (unsolved.size() < MAX_UNSOLVED) {
+            unsolved.put(name, Boolean.TRUE);
+        }
+
+        return reference;
+    }
+
+    public void warmUp(Iterable<String> names) {
+        for (var name : names) {
+            tryToSolveType(name);
+        }
+    }
+}
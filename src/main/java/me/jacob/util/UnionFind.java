@@ -1,31 +1,55 @@
 package me.jacob.util;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
-
+/**
+ * Union-find over the dense ids 0..size-1, backed by primitive arrays so that large call graphs
+ * neither box every lookup nor recurse on long parent chains.
+ */
 public class UnionFind {
-    private Map<Integer, Integer> parent;
+    private final int[] parent;
+    private final byte[] rank;
 
-    public UnionFind(Set<Integer> nodes) {
-        parent = new HashMap<>();
-        for (int node : nodes) {
-            parent.put(node, node);
+    public UnionFind(int size) {
+        parent = new int[size];
+        rank = new byte[size];
+        for (int node = 0; node < size; node++) {
+            parent[node] = node;
         }
     }
 
     public int find(int x) {
-        if (parent.get(x) != x) {
-            parent.put(x, find(parent.get(x))); // Path compression
+        int root = x;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+
+        // Path compression, point everything on the way directly at the root
+        while (parent[x] != root) {
+            int next = parent[x];
+            parent[x] = root;
+            x = next;
         }
-        return parent.get(x);
+
+        return root;
     }
 
     public void union(int x, int y) {
         int px = find(x);
         int py = find(y);
-        if (px != py) {
-            parent.put(px, py);
+        if (px == py) {
+            return;
         }
+
+        if (rank[px] < rank[py]) {
+            parent[px] = py;
+        } else if (rank[px] > rank[py]) {
+            parent[py] = px;
+        } else {
+            parent[py] = px;
+            rank[px]++;
+        }
+    }
+
+    public int size() {
+        return parent.length;
     }
 }